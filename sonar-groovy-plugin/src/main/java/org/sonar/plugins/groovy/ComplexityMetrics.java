@@ -0,0 +1,108 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy;
+
+import com.google.common.collect.Lists;
+import org.gmetrics.result.MetricResult;
+import org.gmetrics.result.NumberMetricResult;
+import org.gmetrics.result.SingleNumberMetricResult;
+import org.gmetrics.resultsnode.ClassResultsNode;
+import org.gmetrics.resultsnode.ResultsNode;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.PersistenceMode;
+import org.sonar.api.measures.RangeDistributionBuilder;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Classes, functions and complexity of a file, computed from the GMetrics results of its classes.
+ */
+class ComplexityMetrics implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final String CYCLOMATIC_COMPLEXITY_METRIC_NAME = "CyclomaticComplexity";
+
+  private static final Number[] FUNCTIONS_DISTRIB_BOTTOM_LIMITS = {1, 2, 4, 6, 8, 10, 12};
+  private static final Number[] FILES_DISTRIB_BOTTOM_LIMITS = {0, 5, 10, 20, 30, 60, 90};
+
+  private int classes = 0;
+  private int functions = 0;
+  private int complexity = 0;
+  private final ArrayList<Integer> functionsComplexity = Lists.newArrayList();
+
+  static ComplexityMetrics of(Collection<ClassResultsNode> results) {
+    ComplexityMetrics metrics = new ComplexityMetrics();
+    for (ClassResultsNode result : results) {
+      metrics.classes += 1;
+
+      for (ResultsNode resultsNode : result.getChildren().values()) {
+        metrics.functions += 1;
+        for (MetricResult metricResult : resultsNode.getMetricResults()) {
+          String metricName = metricResult.getMetric().getName();
+          if (CYCLOMATIC_COMPLEXITY_METRIC_NAME.equals(metricName)) {
+            metrics.functionsComplexity.add((Integer) ((SingleNumberMetricResult) metricResult).getNumber());
+          }
+        }
+      }
+
+      for (MetricResult metricResult : result.getMetricResults()) {
+        String metricName = metricResult.getMetric().getName();
+        if (CYCLOMATIC_COMPLEXITY_METRIC_NAME.equals(metricName)) {
+          metrics.complexity += (Integer) ((NumberMetricResult) metricResult).getValues().get("total");
+        }
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * @return false when GMetrics found no class in the file, in which case there is nothing to save.
+   */
+  boolean hasClasses() {
+    return classes > 0;
+  }
+
+  void save(SensorContext context, InputFile sonarFile) {
+    RangeDistributionBuilder functionsComplexityDistribution = new RangeDistributionBuilder(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION, FUNCTIONS_DISTRIB_BOTTOM_LIMITS);
+    double complexityInFunctions = 0;
+    for (Integer functionComplexity : functionsComplexity) {
+      functionsComplexityDistribution.add(functionComplexity);
+      complexityInFunctions += functionComplexity;
+    }
+
+    context.saveMeasure(sonarFile, CoreMetrics.FILES, 1.0);
+    context.saveMeasure(sonarFile, CoreMetrics.CLASSES, (double) classes);
+    context.saveMeasure(sonarFile, CoreMetrics.FUNCTIONS, (double) functions);
+    context.saveMeasure(sonarFile, CoreMetrics.COMPLEXITY, (double) complexity);
+    context.saveMeasure(sonarFile, CoreMetrics.COMPLEXITY_IN_CLASSES, (double) complexity);
+    context.saveMeasure(sonarFile, CoreMetrics.COMPLEXITY_IN_FUNCTIONS, complexityInFunctions);
+
+    context.saveMeasure(sonarFile, functionsComplexityDistribution.build().setPersistenceMode(PersistenceMode.MEMORY));
+    RangeDistributionBuilder fileComplexityDistribution = new RangeDistributionBuilder(CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION, FILES_DISTRIB_BOTTOM_LIMITS);
+    fileComplexityDistribution.add(complexity);
+    context.saveMeasure(sonarFile, fileComplexityDistribution.build().setPersistenceMode(PersistenceMode.MEMORY));
+  }
+
+}
@@ -28,9 +28,11 @@ import org.sonar.plugins.groovy.cobertura.CoberturaSensor;
 import org.sonar.plugins.groovy.codenarc.CodeNarcRulesDefinition;
 import org.sonar.plugins.groovy.codenarc.CodeNarcSensor;
 import org.sonar.plugins.groovy.codenarc.SonarWayProfile;
+import org.sonar.plugins.groovy.foundation.AnalysisCache;
 import org.sonar.plugins.groovy.foundation.Groovy;
 import org.sonar.plugins.groovy.foundation.GroovyColorizerFormat;
 import org.sonar.plugins.groovy.foundation.GroovyCpdMapping;
+import org.sonar.plugins.groovy.foundation.GroovySourceCache;
 import org.sonar.plugins.groovy.jacoco.JaCoCoExtensions;
 import org.sonar.plugins.groovy.surefire.GroovySurefireParser;
 import org.sonar.plugins.groovy.surefire.GroovySurefireSensor;
@@ -45,13 +47,31 @@ import java.util.List;
     project = true,
     module = true,
     global = true),
+  @Property(
+    key = GroovyPlugin.CODENARC_THREADS,
+    name = "CodeNarc threads",
+    description = "Number of files analyzed concurrently by CodeNarc. Leave empty to use one thread per available core.",
+    project = true,
+    module = true,
+    global = true,
+    type = PropertyType.INTEGER),
   @Property(
     key = GroovyPlugin.COBERTURA_REPORT_PATH,
     name = "Cobertura Report",
-    description = "Path to the Cobertura XML report. Path may be absolute or relative to the project base directory.",
+    description = "Comma-separated list of paths to Cobertura XML reports. Paths may be absolute or relative to the project base directory, " +
+      "and may contain wildcards such as target/**/coverage.xml. The coverage of files covered by several reports is merged: " +
+      "line hits are summed, while the condition coverage of a line is the best one among the reports, as reports do not tell which conditions are covered.",
     project = true,
     module = true,
     global = true),
+  @Property(
+    key = GroovyPlugin.COBERTURA_THREADS,
+    name = "Cobertura threads",
+    description = "Number of Cobertura reports parsed concurrently. Leave empty to use one thread per available core.",
+    project = true,
+    module = true,
+    global = true,
+    type = PropertyType.INTEGER),
   @Property(
     key = GroovyPlugin.IGNORE_HEADER_COMMENTS,
     defaultValue = "true",
@@ -64,6 +84,41 @@ import java.util.List;
     global = true,
     type = PropertyType.BOOLEAN
   ),
+  @Property(
+    key = GroovyPlugin.GMETRICS_THREADS,
+    name = "Metrics threads",
+    description = "Number of files measured concurrently when computing size and complexity metrics: both line counts and GMetrics complexity " +
+      "use these threads. Leave empty to use one thread per available core.",
+    project = true,
+    module = true,
+    global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = GroovyPlugin.SUREFIRE_THREADS,
+    name = "Surefire threads",
+    description = "Number of threads parsing Surefire reports. Leave empty to use one thread per available core.",
+    project = true,
+    module = true,
+    global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = GroovyPlugin.SUREFIRE_STREAMING_SAVE,
+    defaultValue = "false",
+    name = "Surefire streaming save",
+    description = "If set to \"true\", test cases are saved as soon as their Surefire report is parsed, instead of once all reports are parsed. " +
+      "Reports are then parsed one after the other, but memory does not grow with the number of test cases.",
+    project = true,
+    module = true,
+    global = true,
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = GroovyPlugin.SUREFIRE_MAX_STACK_TRACE_LENGTH,
+    name = "Surefire stack trace length",
+    description = "Number of characters above which the stack traces of failed tests are truncated. Leave empty to keep them whole.",
+    project = true,
+    module = true,
+    global = true,
+    type = PropertyType.INTEGER),
   @Property(
     key = GroovyPlugin.FILE_SUFFIXES_KEY,
     defaultValue = GroovyPlugin.DEFAULT_FILE_SUFFIXES,
@@ -79,13 +134,39 @@ import java.util.List;
     description = "Comma-separated list of optional directories that contain the compiled groovy sources.",
     project = true,
     module = true,
-    global = true)
+    global = true),
+  @Property(
+    key = GroovyPlugin.SOURCE_CACHE_MAX_SIZE,
+    name = "Source cache size",
+    description = "Maximum memory, in megabytes, of the Groovy files kept read and compiled to an AST during the analysis, " +
+      "so that the sensors do not read and compile them again. The memory of a file is estimated from the size of its source code. " +
+      "Leave empty to use a quarter of the maximum heap.",
+    project = true,
+    module = true,
+    global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = GroovyPlugin.ANALYSIS_CACHE_ENABLED,
+    defaultValue = "false",
+    name = "Analysis cache",
+    description = "If set to \"true\", results of the analysis of each file are kept in the working directory, " +
+      "and files which did not change since the previous analysis, with the same configuration and version of the plugin, are not analyzed again.",
+    project = true,
+    module = true,
+    global = true,
+    type = PropertyType.BOOLEAN)
 })
 public class GroovyPlugin extends SonarPlugin {
 
   public static final String CODENARC_REPORT_PATH = "sonar.groovy.codenarc.reportPath";
+  public static final String CODENARC_THREADS = "sonar.groovy.codenarc.threads";
   public static final String COBERTURA_REPORT_PATH = "sonar.groovy.cobertura.reportPath";
+  public static final String COBERTURA_THREADS = "sonar.groovy.cobertura.threads";
   public static final String IGNORE_HEADER_COMMENTS = "sonar.groovy.ignoreHeaderComments";
+  public static final String GMETRICS_THREADS = "sonar.groovy.gmetrics.threads";
+  public static final String SUREFIRE_THREADS = "sonar.groovy.surefire.threads";
+  public static final String SUREFIRE_STREAMING_SAVE = "sonar.groovy.surefire.streamingSave";
+  public static final String SUREFIRE_MAX_STACK_TRACE_LENGTH = "sonar.groovy.surefire.maxStackTraceLength";
 
   public static final String SONAR_GROOVY_BINARIES = "sonar.groovy.binaries";
   public static final String SONAR_GROOVY_BINARIES_FALLBACK = "sonar.binaries";
@@ -93,6 +174,9 @@ public class GroovyPlugin extends SonarPlugin {
   public static final String FILE_SUFFIXES_KEY = "sonar.groovy.file.suffixes";
   public static final String DEFAULT_FILE_SUFFIXES = ".groovy";
 
+  public static final String SOURCE_CACHE_MAX_SIZE = "sonar.groovy.sourceCache.maxSize";
+  public static final String ANALYSIS_CACHE_ENABLED = "sonar.groovy.analysisCache";
+
   @Override
   public List getExtensions() {
     ImmutableList.Builder<Object> builder = ImmutableList.builder();
@@ -107,6 +191,8 @@ public class GroovyPlugin extends SonarPlugin {
       Groovy.class,
       GroovyColorizerFormat.class,
       GroovyCpdMapping.class,
+      GroovySourceCache.class,
+      AnalysisCache.class,
       // Main sensor
       GroovySensor.class,
       // Surefire
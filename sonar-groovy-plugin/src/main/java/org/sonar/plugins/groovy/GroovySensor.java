@@ -19,6 +19,10 @@
  */
 package org.sonar.plugins.groovy;
 
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import groovyjarjarantlr.Token;
 import groovyjarjarantlr.TokenStream;
 import groovyjarjarantlr.TokenStreamException;
@@ -26,11 +30,8 @@ import org.codehaus.groovy.antlr.parser.GroovyLexer;
 import org.codehaus.groovy.antlr.parser.GroovyTokenTypes;
 import org.gmetrics.GMetricsRunner;
 import org.gmetrics.metricset.DefaultMetricSet;
-import org.gmetrics.result.MetricResult;
-import org.gmetrics.result.NumberMetricResult;
-import org.gmetrics.result.SingleNumberMetricResult;
+import org.gmetrics.metricset.MetricSet;
 import org.gmetrics.resultsnode.ClassResultsNode;
-import org.gmetrics.resultsnode.ResultsNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Sensor;
@@ -38,46 +39,54 @@ import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.config.Settings;
-import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
-import org.sonar.api.measures.PersistenceMode;
-import org.sonar.api.measures.RangeDistributionBuilder;
 import org.sonar.api.resources.Project;
+import org.sonar.plugins.groovy.foundation.AnalysisCache;
+import org.sonar.plugins.groovy.foundation.Groovy;
 import org.sonar.plugins.groovy.foundation.GroovyFileSystem;
+import org.sonar.plugins.groovy.foundation.GroovySource;
+import org.sonar.plugins.groovy.foundation.GroovySourceCache;
+import org.sonar.plugins.groovy.foundation.ParallelTasks;
 import org.sonar.plugins.groovy.gmetrics.CustomSourceAnalyzer;
 
+import javax.annotation.CheckForNull;
+
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 public class GroovySensor implements Sensor {
 
-  private static final String CYCLOMATIC_COMPLEXITY_METRIC_NAME = "CyclomaticComplexity";
-
   private static final Logger LOG = LoggerFactory.getLogger(GroovySensor.class);
 
-  private static final Number[] FUNCTIONS_DISTRIB_BOTTOM_LIMITS = {1, 2, 4, 6, 8, 10, 12};
-  private static final Number[] FILES_DISTRIB_BOTTOM_LIMITS = {0, 5, 10, 20, 30, 60, 90};
+  private static final String LINES_CACHE = "lines";
+  private static final String COMPLEXITY_CACHE = "complexity";
 
   private final Settings settings;
   private final FileLinesContextFactory fileLinesContextFactory;
   private final FileSystem fileSystem;
+  private final Groovy groovy;
   private final GroovyFileSystem groovyFileSystem;
+  private final GroovySourceCache sourceCache;
+  private final AnalysisCache analysisCache;
 
-  private double loc = 0;
-  private double comments = 0;
-  private int currentLine = 0;
-  private FileLinesContext fileLinesContext;
-
-  public GroovySensor(Settings settings, FileLinesContextFactory fileLinesContextFactory, FileSystem fileSystem) {
+  public GroovySensor(Settings settings, FileLinesContextFactory fileLinesContextFactory, FileSystem fileSystem, Groovy groovy,
+    GroovySourceCache sourceCache, AnalysisCache analysisCache) {
     this.settings = settings;
     this.fileLinesContextFactory = fileLinesContextFactory;
     this.fileSystem = fileSystem;
+    this.groovy = groovy;
     this.groovyFileSystem = new GroovyFileSystem(fileSystem);
+    this.sourceCache = sourceCache;
+    this.analysisCache = analysisCache;
   }
 
   @Override
@@ -87,125 +96,167 @@ public class GroovySensor implements Sensor {
 
   @Override
   public void analyse(Project project, SensorContext context) {
-    computeBaseMetrics(project, context);
-    processFiles(context);
+    // line metrics and GMetrics share the same workers, both being governed by the GMetrics thread count
+    ExecutorService executor = ParallelTasks.newExecutor(groovy.getGMetricsThreads());
+    try {
+      computeBaseMetrics(context, executor);
+      processFiles(context, executor);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void processFiles(SensorContext context, ExecutorService executor) {
+    List<File> sourceFiles = groovyFileSystem.sourceFiles();
+    Map<File, ComplexityMetrics> metricsByFile = Maps.newLinkedHashMap();
+    List<File> filesToAnalyze = Lists.newArrayList();
+    for (File file : sourceFiles) {
+      ComplexityMetrics cached = analysisCache.get(COMPLEXITY_CACHE, cacheKey(file), ComplexityMetrics.class);
+      if (cached != null) {
+        metricsByFile.put(file, cached);
+      } else {
+        filesToAnalyze.add(file);
+      }
+    }
+
+    if (!filesToAnalyze.isEmpty()) {
+      Map<File, Collection<ClassResultsNode>> resultsByFile = runGMetrics(filesToAnalyze, executor).asMap();
+      for (File file : filesToAnalyze) {
+        Collection<ClassResultsNode> results = resultsByFile.get(file);
+        ComplexityMetrics metrics = ComplexityMetrics.of(results == null ? Collections.<ClassResultsNode>emptyList() : results);
+        analysisCache.put(COMPLEXITY_CACHE, cacheKey(file), metrics);
+        metricsByFile.put(file, metrics);
+      }
+    }
+
+    for (Entry<File, ComplexityMetrics> entry : metricsByFile.entrySet()) {
+      ComplexityMetrics metrics = entry.getValue();
+      if (metrics.hasClasses()) {
+        InputFile sonarFile = groovyFileSystem.inputFile(entry.getKey());
+        metrics.save(context, sonarFile);
+      }
+    }
   }
 
-  private void processFiles(SensorContext context) {
+  private Multimap<File, ClassResultsNode> runGMetrics(List<File> sourceFiles, ExecutorService executor) {
     GMetricsRunner runner = new GMetricsRunner();
     runner.setMetricSet(new DefaultMetricSet());
-    List<File> sourceFiles = groovyFileSystem.sourceFiles();
     String baseDirAbsolutePath = fileSystem.baseDir().getAbsolutePath();
 
-    CustomSourceAnalyzer analyzer = new CustomSourceAnalyzer(baseDirAbsolutePath, sourceFiles);
+    Supplier<MetricSet> metricSets = new Supplier<MetricSet>() {
+      @Override
+      public MetricSet get() {
+        return new DefaultMetricSet();
+      }
+    };
+    CustomSourceAnalyzer analyzer = new CustomSourceAnalyzer(baseDirAbsolutePath, sourceFiles, sourceCache, executor, metricSets);
     runner.setSourceAnalyzer(analyzer);
     runner.execute();
-
-    for (Entry<File, Collection<ClassResultsNode>> entry : analyzer.getResultsByFile().asMap().entrySet()) {
-      File file = entry.getKey();
-      Collection<ClassResultsNode> results = entry.getValue();
-      InputFile sonarFile = fileSystem.inputFile(fileSystem.predicates().hasAbsolutePath(file.getAbsolutePath()));
-      processFile(context, sonarFile, results);
-    }
+    return analyzer.getResultsByFile();
   }
 
-  private static void processFile(SensorContext context, InputFile sonarFile, Collection<ClassResultsNode> results) {
-    double classes = 0;
-    double methods = 0;
-    double complexity = 0;
-    double complexityInFunctions = 0;
-
-    RangeDistributionBuilder functionsComplexityDistribution = new RangeDistributionBuilder(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION, FUNCTIONS_DISTRIB_BOTTOM_LIMITS);
-
-    for (ClassResultsNode result : results) {
-      classes += 1;
-
-      for (ResultsNode resultsNode : result.getChildren().values()) {
-        methods += 1;
-        for (MetricResult metricResult : resultsNode.getMetricResults()) {
-          String metricName = metricResult.getMetric().getName();
-          if (CYCLOMATIC_COMPLEXITY_METRIC_NAME.equals(metricName)) {
-            int value = (Integer) ((SingleNumberMetricResult) metricResult).getNumber();
-            functionsComplexityDistribution.add(value);
-            complexityInFunctions += value;
+  private void computeBaseMetrics(SensorContext sensorContext, ExecutorService executor) {
+    List<InputFile> inputFiles = Lists.newArrayList();
+    List<Callable<LineMetrics>> tasks = Lists.newArrayList();
+    for (final File groovyFile : groovyFileSystem.sourceFiles()) {
+      InputFile resource = groovyFileSystem.inputFile(groovyFile);
+      if (resource != null) {
+        inputFiles.add(resource);
+        tasks.add(new Callable<LineMetrics>() {
+          @Override
+          public LineMetrics call() {
+            return lineMetrics(groovyFile);
           }
-        }
+        });
       }
+    }
+    List<LineMetrics> results = ParallelTasks.run(executor, tasks);
 
-      for (MetricResult metricResult : result.getMetricResults()) {
-        String metricName = metricResult.getMetric().getName();
-        if (CYCLOMATIC_COMPLEXITY_METRIC_NAME.equals(metricName)) {
-          int value = (Integer) ((NumberMetricResult) metricResult).getValues().get("total");
-          complexity += value;
-        }
+    // the sensor context is not thread-safe: measures are saved once all the files are measured
+    for (int i = 0; i < inputFiles.size(); i++) {
+      InputFile resource = inputFiles.get(i);
+      FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(resource);
+      LineMetrics lineMetrics = results.get(i);
+      if (lineMetrics != null) {
+        lineMetrics.save(sensorContext, resource, fileLinesContext);
       }
+      fileLinesContext.save();
     }
-
-    context.saveMeasure(sonarFile, CoreMetrics.FILES, 1.0);
-    context.saveMeasure(sonarFile, CoreMetrics.CLASSES, classes);
-    context.saveMeasure(sonarFile, CoreMetrics.FUNCTIONS, methods);
-    context.saveMeasure(sonarFile, CoreMetrics.COMPLEXITY, complexity);
-    context.saveMeasure(sonarFile, CoreMetrics.COMPLEXITY_IN_CLASSES, complexity);
-    context.saveMeasure(sonarFile, CoreMetrics.COMPLEXITY_IN_FUNCTIONS, complexityInFunctions);
-
-    context.saveMeasure(sonarFile, functionsComplexityDistribution.build().setPersistenceMode(PersistenceMode.MEMORY));
-    RangeDistributionBuilder fileComplexityDistribution = new RangeDistributionBuilder(CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION, FILES_DISTRIB_BOTTOM_LIMITS);
-    fileComplexityDistribution.add(complexity);
-    context.saveMeasure(sonarFile, fileComplexityDistribution.build().setPersistenceMode(PersistenceMode.MEMORY));
   }
 
-  private void computeBaseMetrics(Project project, SensorContext sensorContext) {
-    for (File groovyFile : groovyFileSystem.sourceFiles()) {
-      InputFile resource = fileSystem.inputFile(fileSystem.predicates().hasAbsolutePath(groovyFile.getAbsolutePath()));
-      if (resource != null) {
-        loc = 0;
-        comments = 0;
-        currentLine = 0;
-        fileLinesContext = fileLinesContextFactory.createFor(resource);
-        try {
-          GroovyLexer groovyLexer = new GroovyLexer(new FileReader(groovyFile));
-          groovyLexer.setWhitespaceIncluded(true);
-          TokenStream tokenStream = groovyLexer.plumb();
-          Token token = tokenStream.nextToken();
-          Token nextToken = tokenStream.nextToken();
-          while (nextToken.getType() != Token.EOF_TYPE) {
-            handleToken(token, nextToken.getLine());
-            token = nextToken;
-            nextToken = tokenStream.nextToken();
-          }
-          handleToken(token, nextToken.getLine());
-          sensorContext.saveMeasure(resource, CoreMetrics.LINES, (double) nextToken.getLine());
-          sensorContext.saveMeasure(resource, CoreMetrics.NCLOC, loc);
-          sensorContext.saveMeasure(resource, CoreMetrics.COMMENT_LINES, comments);
-        } catch (TokenStreamException tse) {
-          LOG.error("Unexpected token when lexing file : " + groovyFile.getName(), tse);
-        } catch (FileNotFoundException fnfe) {
-          LOG.error("Could not find : " + groovyFile.getName(), fnfe);
-        }
-        fileLinesContext.save();
+  @CheckForNull
+  private LineMetrics lineMetrics(File groovyFile) {
+    boolean ignoreHeaderComments = settings.getBoolean(GroovyPlugin.IGNORE_HEADER_COMMENTS);
+    String cacheKey = cacheKey(groovyFile, ignoreHeaderComments);
+    LineMetrics lineMetrics = analysisCache.get(LINES_CACHE, cacheKey, LineMetrics.class);
+    if (lineMetrics == null) {
+      try {
+        lineMetrics = computeLineMetrics(sourceCache.get(groovyFile).getText(), ignoreHeaderComments);
+        analysisCache.put(LINES_CACHE, cacheKey, lineMetrics);
+      } catch (TokenStreamException tse) {
+        LOG.error("Unexpected token when lexing file : " + groovyFile.getName(), tse);
+      } catch (IOException ioe) {
+        LOG.error("Could not read : " + groovyFile.getName(), ioe);
       }
     }
+    return lineMetrics;
+  }
+
+  static LineMetrics computeLineMetrics(String text, boolean ignoreHeaderComments) throws TokenStreamException {
+    LineMetrics lineMetrics = LineMetricsScanner.scan(text.toCharArray(), ignoreHeaderComments);
+    if (lineMetrics == null) {
+      LOG.debug("Falling back to the Groovy lexer to compute line metrics");
+      lineMetrics = lexLineMetrics(text, ignoreHeaderComments);
+    }
+    return lineMetrics;
   }
 
-  private void handleToken(Token token, int nextTokenLine) {
+  static LineMetrics lexLineMetrics(String text, boolean ignoreHeaderComments) throws TokenStreamException {
+    LineMetrics lineMetrics = new LineMetrics();
+    GroovyLexer groovyLexer = new GroovyLexer(new StringReader(text));
+    groovyLexer.setWhitespaceIncluded(true);
+    TokenStream tokenStream = groovyLexer.plumb();
+    Token token = tokenStream.nextToken();
+    Token nextToken = tokenStream.nextToken();
+    while (nextToken.getType() != Token.EOF_TYPE) {
+      handleToken(lineMetrics, token, nextToken.getLine(), ignoreHeaderComments);
+      token = nextToken;
+      nextToken = tokenStream.nextToken();
+    }
+    handleToken(lineMetrics, token, nextToken.getLine(), ignoreHeaderComments);
+    lineMetrics.setLines(nextToken.getLine());
+    return lineMetrics;
+  }
+
+  private static void handleToken(LineMetrics lineMetrics, Token token, int nextTokenLine, boolean ignoreHeaderComments) {
     int tokenType = token.getType();
     int tokenLine = token.getLine();
     if (isComment(tokenType)) {
-      if (isNotHeaderComment(tokenLine)) {
-        comments += nextTokenLine - tokenLine + 1;
-      }
-      for (int commentLineNb = tokenLine; commentLineNb <= nextTokenLine; commentLineNb++) {
-        fileLinesContext.setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, commentLineNb, 1);
-      }
-    } else if (isNotWhitespace(tokenType) && tokenLine != currentLine) {
-      loc++;
-      fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, tokenLine, 1);
-      currentLine = tokenLine;
+      lineMetrics.addCommentLines(tokenLine, nextTokenLine, isNotHeaderComment(tokenLine, ignoreHeaderComments));
+    } else if (isNotWhitespace(tokenType) && !lineMetrics.isCodeLine(tokenLine)) {
+      lineMetrics.addCodeLine(tokenLine);
+    }
+  }
+
+  /**
+   * Key of the cached results of a file, null when the file can not be read, in which case nothing is cached.
+   */
+  @CheckForNull
+  private String cacheKey(File file, Object... configuration) {
+    if (!analysisCache.isEnabled()) {
+      return null;
+    }
+    try {
+      GroovySource source = sourceCache.get(file);
+      return AnalysisCache.key(file.getAbsolutePath(), source.getHash(), AnalysisCache.key(configuration));
+    } catch (IOException e) {
+      LOG.debug("Unable to read " + file.getAbsolutePath(), e);
+      return null;
     }
   }
 
-  private boolean isNotHeaderComment(int tokenLine) {
-    return !(tokenLine == 1 && settings.getBoolean(GroovyPlugin.IGNORE_HEADER_COMMENTS));
+  private static boolean isNotHeaderComment(int tokenLine, boolean ignoreHeaderComments) {
+    return !(tokenLine == 1 && ignoreHeaderComments);
   }
 
   private static boolean isNotWhitespace(int tokenType) {
@@ -0,0 +1,116 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy;
+
+import com.google.common.base.Objects;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * Size and comment metrics of a file, computed from its tokens.
+ */
+class LineMetrics implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final BitSet codeLines = new BitSet();
+  private final BitSet commentLines = new BitSet();
+  private int lines = 0;
+  private int comments = 0;
+
+  void addCodeLine(int line) {
+    codeLines.set(line);
+  }
+
+  boolean isCodeLine(int line) {
+    return codeLines.get(line);
+  }
+
+  /**
+   * @param counted false for comments which must not increase the number of comment lines, such as the file header.
+   */
+  void addCommentLines(int fromLine, int toLine, boolean counted) {
+    if (counted) {
+      comments += toLine - fromLine + 1;
+    }
+    commentLines.set(fromLine, toLine + 1);
+  }
+
+  void setLines(int lines) {
+    this.lines = lines;
+  }
+
+  int getLines() {
+    return lines;
+  }
+
+  int getNcloc() {
+    return codeLines.cardinality();
+  }
+
+  int getComments() {
+    return comments;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof LineMetrics)) {
+      return false;
+    }
+    LineMetrics other = (LineMetrics) obj;
+    return lines == other.lines && comments == other.comments && codeLines.equals(other.codeLines) && commentLines.equals(other.commentLines);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(lines, comments, codeLines, commentLines);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("lines", lines)
+      .add("comments", comments)
+      .add("codeLines", codeLines)
+      .add("commentLines", commentLines)
+      .toString();
+  }
+
+  void save(SensorContext context, InputFile inputFile, FileLinesContext fileLinesContext) {
+    for (int line = commentLines.nextSetBit(0); line >= 0; line = commentLines.nextSetBit(line + 1)) {
+      fileLinesContext.setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, 1);
+    }
+    for (int line = codeLines.nextSetBit(0); line >= 0; line = codeLines.nextSetBit(line + 1)) {
+      fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, 1);
+    }
+    context.saveMeasure(inputFile, CoreMetrics.LINES, (double) lines);
+    context.saveMeasure(inputFile, CoreMetrics.NCLOC, (double) getNcloc());
+    context.saveMeasure(inputFile, CoreMetrics.COMMENT_LINES, (double) comments);
+  }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy;
+
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.CheckForNull;
+
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * Computes {@link LineMetrics} in a single pass over the characters of a file, without building any token.
+ * Lines are classified the same way as from the tokens of {@link org.codehaus.groovy.antlr.parser.GroovyLexer}:
+ * a line is a line of code when a token other than a comment starts on it, so that only the first line of
+ * a multi-line string is a line of code, unless a GString expression appears on the following ones.
+ * Anything which is not recognized makes the scan fail, so that the lexer can be used instead. This is also the case
+ * of the few constructs where the lexer depends on newlines: comments inside parentheses and slashes at the beginning
+ * of a line after an expression, and of slashes following a keyword, which may start a slashy string or be a division.
+ */
+final class LineMetricsScanner {
+
+  private static final Set<String> KEYWORDS = ImmutableSet.of(
+    "abstract", "as", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+    "def", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if",
+    "implements", "import", "in", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+    "protected", "public", "return", "short", "static", "strictfp", "switch", "synchronized", "threadsafe", "throw",
+    "throws", "trait", "transient", "try", "void", "volatile", "when", "while");
+
+  private final char[] text;
+  private final boolean ignoreHeaderComments;
+  private final LineMetrics metrics = new LineMetrics();
+
+  private int pos = 0;
+  private int line = 1;
+  /**
+   * Whether the last token can end an expression, in which case a slash is a division and not the start of a slashy string.
+   */
+  private boolean expressionEnd = false;
+  private int lastTokenLine = 0;
+  /**
+   * Bounds of the last token when it is an identifier, a keyword or a number, start being -1 otherwise.
+   */
+  private int lastWordStart = -1;
+  private int lastWordEnd = -1;
+  /**
+   * Nesting of brackets, with the bits set for parentheses and square brackets, and cleared for curly braces.
+   */
+  private final BitSet parentheses = new BitSet();
+  private int nesting = 0;
+  private int interpolations = 0;
+
+  private LineMetricsScanner(char[] text, boolean ignoreHeaderComments) {
+    this.text = text;
+    this.ignoreHeaderComments = ignoreHeaderComments;
+  }
+
+  /**
+   * @return null when the text contains something which is not supported, or is not valid Groovy
+   */
+  @CheckForNull
+  static LineMetrics scan(char[] text, boolean ignoreHeaderComments) {
+    LineMetricsScanner scanner = new LineMetricsScanner(text, ignoreHeaderComments);
+    try {
+      scanner.scanFile();
+    } catch (UnsupportedSyntaxException e) {
+      return null;
+    }
+    return scanner.metrics;
+  }
+
+  private void scanFile() throws UnsupportedSyntaxException {
+    if (is(0, '#') && is(1, '!')) {
+      lineComment();
+    }
+    scanCode(false);
+    metrics.setLines(line);
+  }
+
+  /**
+   * @param nested true when scanning a GString expression, which stops after its closing brace.
+   */
+  private void scanCode(boolean nested) throws UnsupportedSyntaxException {
+    int depth = 0;
+    while (pos < text.length) {
+      char c = text[pos];
+      if (c == '\n' || c == '\r') {
+        newLine();
+      } else if (c == ' ' || c == '\t' || c == '\f') {
+        pos++;
+      } else if (c == '\\' && (is(pos + 1, '\n') || is(pos + 1, '\r'))) {
+        // line continuation
+        pos++;
+        newLine();
+      } else if (c == '/' && is(pos + 1, '/')) {
+        failInsideParentheses();
+        lineComment();
+      } else if (c == '/' && is(pos + 1, '*')) {
+        failInsideParentheses();
+        blockComment();
+      } else {
+        metrics.addCodeLine(line);
+        if (c == '}' && nested && depth == 0) {
+          pos++;
+          return;
+        }
+        depth += scanToken(c);
+        lastTokenLine = line;
+      }
+    }
+    if (nested) {
+      throw new UnsupportedSyntaxException();
+    }
+  }
+
+  /**
+   * @return the change of depth of curly braces
+   */
+  private int scanToken(char c) throws UnsupportedSyntaxException {
+    int depthChange = 0;
+    boolean endsExpression = false;
+    if ((c == '/' || c == '$' && is(pos + 1, '/')) && expressionEnd && (lastTokenLine != line || isLastWordKeyword())) {
+      throw new UnsupportedSyntaxException();
+    }
+    lastWordStart = -1;
+    if (c == '\'') {
+      singleQuotedString();
+      endsExpression = true;
+    } else if (c == '"') {
+      doubleQuotedString();
+      endsExpression = true;
+    } else if (c == '/' && !expressionEnd) {
+      pos++;
+      slashyString();
+      endsExpression = true;
+    } else if (c == '$' && is(pos + 1, '/') && !expressionEnd) {
+      pos += 2;
+      dollarSlashyString();
+      endsExpression = true;
+    } else if (Character.isJavaIdentifierPart(c) && !Character.isIdentifierIgnorable(c)) {
+      // identifiers, keywords and numbers
+      lastWordStart = pos;
+      while (pos < text.length && Character.isJavaIdentifierPart(text[pos]) && !Character.isIdentifierIgnorable(text[pos])) {
+        pos++;
+      }
+      lastWordEnd = pos;
+      endsExpression = true;
+    } else if ((c == '+' || c == '-') && is(pos + 1, c)) {
+      pos += 2;
+      endsExpression = true;
+    } else if (c == ')' || c == ']') {
+      pos++;
+      close();
+      endsExpression = true;
+    } else if (c == '}') {
+      pos++;
+      close();
+      depthChange = -1;
+      endsExpression = true;
+    } else if (c == '(' || c == '[') {
+      pos++;
+      open(true);
+    } else if (c == '{') {
+      pos++;
+      open(false);
+      depthChange = 1;
+    } else if (";,.:?=<>!~+-*/%&|^@".indexOf(c) >= 0) {
+      pos++;
+    } else {
+      throw new UnsupportedSyntaxException();
+    }
+    expressionEnd = endsExpression;
+    return depthChange;
+  }
+
+  private boolean isLastWordKeyword() {
+    return lastWordStart >= 0 && KEYWORDS.contains(new String(text, lastWordStart, lastWordEnd - lastWordStart));
+  }
+
+  private void open(boolean parenthesis) {
+    nesting++;
+    parentheses.set(nesting, parenthesis);
+  }
+
+  private void close() throws UnsupportedSyntaxException {
+    if (nesting == 0) {
+      throw new UnsupportedSyntaxException();
+    }
+    nesting--;
+  }
+
+  private void failInsideParentheses() throws UnsupportedSyntaxException {
+    if (interpolations > 0 || nesting > 0 && parentheses.get(nesting)) {
+      throw new UnsupportedSyntaxException();
+    }
+  }
+
+  private void lineComment() {
+    int startLine = line;
+    while (pos < text.length && text[pos] != '\n' && text[pos] != '\r') {
+      pos++;
+    }
+    metrics.addCommentLines(startLine, startLine, isCounted(startLine));
+  }
+
+  private void blockComment() throws UnsupportedSyntaxException {
+    int startLine = line;
+    pos += 2;
+    while (!(is(pos, '*') && is(pos + 1, '/'))) {
+      advanceInLiteral();
+    }
+    pos += 2;
+    metrics.addCommentLines(startLine, line, isCounted(startLine));
+  }
+
+  private boolean isCounted(int commentLine) {
+    return !(commentLine == 1 && ignoreHeaderComments);
+  }
+
+  private void singleQuotedString() throws UnsupportedSyntaxException {
+    if (is(pos + 1, '\'') && is(pos + 2, '\'')) {
+      pos += 3;
+      while (!(is(pos, '\'') && is(pos + 1, '\'') && is(pos + 2, '\''))) {
+        skipEscapeOrAdvance();
+      }
+      pos += 3;
+    } else {
+      pos++;
+      while (!is(pos, '\'')) {
+        failOnNewLine();
+        skipEscapeOrAdvance();
+      }
+      pos++;
+    }
+  }
+
+  private void doubleQuotedString() throws UnsupportedSyntaxException {
+    if (is(pos + 1, '"') && is(pos + 2, '"')) {
+      pos += 3;
+      while (!(is(pos, '"') && is(pos + 1, '"') && is(pos + 2, '"'))) {
+        if (is(pos, '$')) {
+          interpolation(true);
+        } else {
+          skipEscapeOrAdvance();
+        }
+      }
+      pos += 3;
+    } else {
+      pos++;
+      while (!is(pos, '"')) {
+        failOnNewLine();
+        if (is(pos, '$')) {
+          interpolation(true);
+        } else {
+          skipEscapeOrAdvance();
+        }
+      }
+      pos++;
+    }
+  }
+
+  private void slashyString() throws UnsupportedSyntaxException {
+    while (!is(pos, '/')) {
+      if (is(pos, '\\') && is(pos + 1, '/')) {
+        pos += 2;
+      } else if (is(pos, '$')) {
+        interpolation(false);
+      } else {
+        advanceInLiteral();
+      }
+    }
+    pos++;
+  }
+
+  private void dollarSlashyString() throws UnsupportedSyntaxException {
+    while (!(is(pos, '/') && is(pos + 1, '$'))) {
+      if (is(pos, '$') && (is(pos + 1, '$') || is(pos + 1, '/'))) {
+        pos += 2;
+      } else if (is(pos, '$')) {
+        interpolation(false);
+      } else {
+        advanceInLiteral();
+      }
+    }
+    pos += 2;
+  }
+
+  /**
+   * Handles a dollar sign in a GString: the tokens of the expression which follows are lines of code.
+   * @param strict true when a dollar sign must be followed by an expression
+   */
+  private void interpolation(boolean strict) throws UnsupportedSyntaxException {
+    if (is(pos + 1, '{')) {
+      pos += 2;
+      metrics.addCodeLine(line);
+      expressionEnd = false;
+      interpolations++;
+      scanCode(true);
+      interpolations--;
+    } else if (pos + 1 < text.length && Character.isJavaIdentifierStart(text[pos + 1]) && text[pos + 1] != '$') {
+      metrics.addCodeLine(line);
+      pos++;
+    } else if (strict) {
+      throw new UnsupportedSyntaxException();
+    } else {
+      pos++;
+    }
+  }
+
+  private void skipEscapeOrAdvance() throws UnsupportedSyntaxException {
+    if (is(pos, '\\') && pos + 1 < text.length) {
+      pos++;
+    }
+    advanceInLiteral();
+  }
+
+  private void advanceInLiteral() throws UnsupportedSyntaxException {
+    if (pos >= text.length) {
+      throw new UnsupportedSyntaxException();
+    }
+    char c = text[pos];
+    if (c == '\n' || c == '\r') {
+      newLine();
+    } else {
+      pos++;
+    }
+  }
+
+  private void failOnNewLine() throws UnsupportedSyntaxException {
+    if (is(pos, '\n') || is(pos, '\r')) {
+      throw new UnsupportedSyntaxException();
+    }
+  }
+
+  private void newLine() {
+    if (text[pos] == '\r' && is(pos + 1, '\n')) {
+      pos++;
+    }
+    pos++;
+    line++;
+  }
+
+  private boolean is(int index, char c) {
+    return index < text.length && text[index] == c;
+  }
+
+  private static class UnsupportedSyntaxException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      // only used for control flow
+      return this;
+    }
+  }
+
+}
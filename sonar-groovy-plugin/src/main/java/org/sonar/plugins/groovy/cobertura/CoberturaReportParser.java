@@ -19,67 +19,146 @@
  */
 package org.sonar.plugins.groovy.cobertura;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.staxmate.in.SMHierarchicCursor;
 import org.codehaus.staxmate.in.SMInputCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.measures.CoverageMeasuresBuilder;
-import org.sonar.api.measures.Measure;
 import org.sonar.api.utils.StaxParser;
 import org.sonar.api.utils.XmlParserException;
+import org.sonar.plugins.groovy.foundation.GroovyFileSystem;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.xml.stream.XMLStreamException;
 
 import java.io.File;
-import java.text.ParseException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-
-import static java.util.Locale.ENGLISH;
-import static org.sonar.api.utils.ParsingUtils.parseNumber;
+import java.util.Set;
 
 public class CoberturaReportParser {
 
   private static final Logger LOG = LoggerFactory.getLogger(CoberturaReportParser.class);
+  private static final int NO_CONDITIONS = -1;
+
+  private final GroovyFileSystem groovyFileSystem;
+  private final Map<InputFile, CoverageMeasuresBuilder> coverageByFile = Maps.newLinkedHashMap();
+  /**
+   * Files resolved from the filename attributes of the report, absent when no source directory contains them.
+   */
+  private final Map<String, Optional<InputFile>> inputFileByFilename = Maps.newHashMap();
+  /**
+   * Null until the sources element is read.
+   */
+  @Nullable
+  private List<String> sourceDirs;
+  /**
+   * Classes read before the sources element, whose files are resolved once the whole report is read.
+   */
+  private final List<ParsingResult> unresolvedResults = Lists.newArrayList();
 
-  private final SensorContext context;
-  private final FileSystem fileSystem;
-  private List<String> sourceDirs = Lists.newArrayList();
+  public CoberturaReportParser(final FileSystem fileSystem) {
+    this(new GroovyFileSystem(fileSystem));
+  }
 
-  public CoberturaReportParser(final SensorContext context, final FileSystem fileSystem) {
-    this.context = context;
-    this.fileSystem = fileSystem;
+  /**
+   * @param groovyFileSystem may be shared by parsers of several reports, so that files are indexed once
+   */
+  public CoberturaReportParser(final GroovyFileSystem groovyFileSystem) {
+    this.groovyFileSystem = groovyFileSystem;
   }
 
   /**
-   * Parse a Cobertura xml report and create measures accordingly
+   * Parse a Cobertura xml report and collect the coverage of each file it covers.
+   * The report is read in a single pass: source directories are usually declared before packages,
+   * otherwise classes are kept until the end of the report to be resolved.
    */
-  public void parseReport(File xmlFile) {
+  public Map<InputFile, CoverageMeasuresBuilder> parseReport(File xmlFile) {
+    sourceDirs = null;
+    unresolvedResults.clear();
+    coverageByFile.clear();
+    inputFileByFilename.clear();
     try {
-      parseSources(xmlFile);
-      parsePackages(xmlFile);
+      StaxParser parser = new StaxParser(new StaxParser.XmlStreamHandler() {
+        @Override
+        public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
+          rootCursor.advance();
+          collectCoverage(rootCursor.childElementCursor());
+        }
+      });
+      parser.parse(xmlFile);
     } catch (XMLStreamException e) {
       throw new XmlParserException(e);
     }
+    return Maps.newLinkedHashMap(coverageByFile);
+  }
+
+  /**
+   * Adds the coverage of a file to the coverage already collected for it, summing hits and keeping
+   * the best condition coverage of each line.
+   */
+  public static void addCoverage(Map<InputFile, CoverageMeasuresBuilder> coverageByFile, InputFile inputFile, CoverageMeasuresBuilder coverage) {
+    CoverageMeasuresBuilder existing = coverageByFile.get(inputFile);
+    coverageByFile.put(inputFile, existing == null ? coverage : merge(existing, coverage));
+  }
+
+  /**
+   * Merges the coverage of a file read from two reports. Hits are summed line by line, which is exact.
+   * Cobertura reports only tell how many conditions of a line are covered, not which ones: the number of
+   * conditions and of covered conditions of a line are therefore the maximum of both reports. This is a lower
+   * bound of the actual condition coverage, which is under-reported when the reports cover different conditions.
+   */
+  static CoverageMeasuresBuilder merge(CoverageMeasuresBuilder first, CoverageMeasuresBuilder second) {
+    Map<Integer, Integer> hitsByLine = Maps.newTreeMap();
+    hitsByLine.putAll(first.getHitsByLine());
+    for (Map.Entry<Integer, Integer> hits : second.getHitsByLine().entrySet()) {
+      Integer existingHits = hitsByLine.get(hits.getKey());
+      hitsByLine.put(hits.getKey(), existingHits == null ? hits.getValue() : (existingHits + hits.getValue()));
+    }
+    CoverageMeasuresBuilder merged = CoverageMeasuresBuilder.create();
+    for (Map.Entry<Integer, Integer> hits : hitsByLine.entrySet()) {
+      merged.setHits(hits.getKey(), hits.getValue());
+    }
+    Set<Integer> linesWithConditions = Sets.newTreeSet(first.getConditionsByLine().keySet());
+    linesWithConditions.addAll(second.getConditionsByLine().keySet());
+    for (Integer line : linesWithConditions) {
+      merged.setConditions(line,
+        Math.max(valueOrZero(first.getConditionsByLine(), line), valueOrZero(second.getConditionsByLine(), line)),
+        Math.max(valueOrZero(first.getCoveredConditionsByLine(), line), valueOrZero(second.getCoveredConditionsByLine(), line)));
+    }
+    return merged;
+  }
+
+  private static int valueOrZero(Map<Integer, Integer> valueByLine, Integer line) {
+    Integer value = valueByLine.get(line);
+    return value == null ? 0 : value;
   }
 
-  private void parseSources(File xmlFile) throws XMLStreamException {
-    StaxParser sourceParser = new StaxParser(new StaxParser.XmlStreamHandler() {
-      @Override
-      public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
-        rootCursor.advance();
-        sourceDirs = collectSourceDirs(rootCursor.descendantElementCursor("source"));
+  private void collectCoverage(SMInputCursor child) throws XMLStreamException {
+    while (child.getNext() != null) {
+      String name = child.getLocalName();
+      if ("sources".equals(name)) {
+        sourceDirs = collectSourceDirs(child.childElementCursor("source"));
+      } else if ("packages".equals(name)) {
+        collectPackageMeasures(child.childElementCursor("package"));
       }
-    });
-    sourceParser.parse(xmlFile);
+    }
+    if (!unresolvedResults.isEmpty()) {
+      for (ParsingResult parsingResult : unresolvedResults) {
+        parsingResult.resolve(getInputFile(parsingResult.filename));
+      }
+      handleFileMeasures(unresolvedResults);
+      unresolvedResults.clear();
+    }
   }
 
   private static List<String> collectSourceDirs(SMInputCursor source) throws XMLStreamException {
@@ -100,31 +179,22 @@ public class CoberturaReportParser {
     return sourceDir;
   }
 
-  private void parsePackages(File xmlFile) throws XMLStreamException {
-    StaxParser fileParser = new StaxParser(new StaxParser.XmlStreamHandler() {
-      @Override
-      public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
-        rootCursor.advance();
-        collectPackageMeasures(rootCursor.descendantElementCursor("package"), sourceDirs);
-      }
-    });
-    fileParser.parse(xmlFile);
-  }
-
-  private void collectPackageMeasures(SMInputCursor pack, List<String> sourceDirs) throws XMLStreamException {
+  private void collectPackageMeasures(SMInputCursor pack) throws XMLStreamException {
     while (pack.getNext() != null) {
       Map<String, ParsingResult> resultByFilename = Maps.newHashMap();
       collectFileMeasures(pack.descendantElementCursor("class"), resultByFilename);
-      handleFileMeasures(resultByFilename);
+      if (sourceDirs == null) {
+        unresolvedResults.addAll(resultByFilename.values());
+      } else {
+        handleFileMeasures(resultByFilename.values());
+      }
     }
   }
 
-  private void handleFileMeasures(Map<String, ParsingResult> resultByFilename) {
-    for (ParsingResult parsingResult : resultByFilename.values()) {
+  private void handleFileMeasures(Collection<ParsingResult> parsingResults) {
+    for (ParsingResult parsingResult : parsingResults) {
       if (parsingResult.inputFile != null) {
-        for (Measure measure : parsingResult.builder.createMeasures()) {
-          context.saveMeasure(parsingResult.inputFile, measure);
-        }
+        addCoverage(coverageByFile, parsingResult.inputFile, parsingResult.builder);
       } else {
         LOG.warn("File not found: {}", parsingResult.filename);
       }
@@ -132,10 +202,22 @@ public class CoberturaReportParser {
   }
 
   @CheckForNull
-  private InputFile getInputFile(String filename, List<String> sourceDirs) {
+  private InputFile getInputFile(String filename) {
+    Optional<InputFile> inputFile = inputFileByFilename.get(filename);
+    if (inputFile == null) {
+      inputFile = Optional.fromNullable(resolveInputFile(filename));
+      inputFileByFilename.put(filename, inputFile);
+    }
+    return inputFile.orNull();
+  }
+
+  @CheckForNull
+  private InputFile resolveInputFile(String filename) {
+    if (sourceDirs == null) {
+      return null;
+    }
     for (String sourceDir : sourceDirs) {
-      String fileAbsolutePath = sourceDir + "/" + filename;
-      InputFile file = fileSystem.inputFile(fileSystem.predicates().hasAbsolutePath(fileAbsolutePath));
+      InputFile file = groovyFileSystem.inputFileFromAbsolutePath(sourceDir + "/" + filename);
       if (file != null) {
         return file;
       }
@@ -149,7 +231,7 @@ public class CoberturaReportParser {
       String fileName = clazz.getAttrValue("filename");
       ParsingResult parsingResult = resultByFilename.get(fileName);
       if (parsingResult == null) {
-        parsingResult = new ParsingResult(fileName, getInputFile(fileName, sourceDirs), CoverageMeasuresBuilder.create());
+        parsingResult = sourceDirs == null ? new ParsingResult(fileName) : new ParsingResult(fileName, getInputFile(fileName));
         resultByFilename.put(fileName, parsingResult);
       }
       collectFileData(clazz, parsingResult);
@@ -159,39 +241,66 @@ public class CoberturaReportParser {
   private static void collectFileData(SMInputCursor clazz, ParsingResult parsingResult) throws XMLStreamException {
     SMInputCursor line = clazz.childElementCursor("lines").advance().childElementCursor("line");
     while (line.getNext() != null) {
-      int lineId = Integer.parseInt(line.getAttrValue("number"));
-      boolean validLine = parsingResult.isValidLine(lineId);
-      if (!validLine && parsingResult.fileExists()) {
-        LOG.info("Hit on invalid line for file " + parsingResult.filename + " (line: " + lineId + "/" + parsingResult.inputFile.lines() + ")");
-      }
-      try {
-        int hits = (int) parseNumber(line.getAttrValue("hits"), ENGLISH);
-        if (validLine) {
-          parsingResult.builder.setHits(lineId, hits);
-        }
-      } catch (ParseException e) {
-        throw new XmlParserException(e);
-      }
+      int lineId = LineAttributes.number(line.getAttrValue("number"));
+      int hits = LineAttributes.hits(line.getAttrValue("hits"));
 
       String isBranch = line.getAttrValue("branch");
       String text = line.getAttrValue("condition-coverage");
-      if (validLine && StringUtils.equals(isBranch, "true") && StringUtils.isNotBlank(text)) {
-        String[] conditions = StringUtils.split(StringUtils.substringBetween(text, "(", ")"), "/");
-        parsingResult.builder.setConditions(lineId, Integer.parseInt(conditions[1]), Integer.parseInt(conditions[0]));
+      if ("true".equals(isBranch) && StringUtils.isNotBlank(text)) {
+        parsingResult.addLine(lineId, hits, LineAttributes.conditions(text), LineAttributes.coveredConditions(text));
+      } else {
+        parsingResult.addLine(lineId, hits, NO_CONDITIONS, NO_CONDITIONS);
       }
     }
   }
 
   private static class ParsingResult {
     private final String filename;
+    private boolean resolved;
     @Nullable
-    private final InputFile inputFile;
-    private final CoverageMeasuresBuilder builder;
+    private InputFile inputFile;
+    private final CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
+    /**
+     * Lines read before the file is resolved, as line number, hits, conditions and covered conditions.
+     */
+    private final List<int[]> pendingLines = Lists.newArrayList();
+
+    public ParsingResult(String filename, @Nullable InputFile inputFile) {
+      this.filename = filename;
+      resolve(inputFile);
+    }
 
-    public ParsingResult(String filename, @Nullable InputFile inputFile, CoverageMeasuresBuilder builder) {
+    /**
+     * Result whose file is not resolved yet.
+     */
+    public ParsingResult(String filename) {
       this.filename = filename;
+    }
+
+    public final void resolve(@Nullable InputFile inputFile) {
       this.inputFile = inputFile;
-      this.builder = builder;
+      this.resolved = true;
+      for (int[] line : pendingLines) {
+        addLine(line[0], line[1], line[2], line[3]);
+      }
+      pendingLines.clear();
+    }
+
+    public void addLine(int lineId, int hits, int conditions, int coveredConditions) {
+      if (!resolved) {
+        pendingLines.add(new int[] {lineId, hits, conditions, coveredConditions});
+        return;
+      }
+      if (!isValidLine(lineId)) {
+        if (fileExists()) {
+          LOG.info("Hit on invalid line for file " + filename + " (line: " + lineId + "/" + inputFile.lines() + ")");
+        }
+        return;
+      }
+      builder.setHits(lineId, hits);
+      if (conditions != NO_CONDITIONS) {
+        builder.setConditions(lineId, conditions, coveredConditions);
+      }
     }
 
     public boolean isValidLine(int lineId) {
@@ -19,30 +19,43 @@
  */
 package org.sonar.plugins.groovy.cobertura;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.CoverageExtension;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.config.Settings;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.measures.CoverageMeasuresBuilder;
+import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Project;
+import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.plugins.groovy.GroovyPlugin;
+import org.sonar.plugins.groovy.foundation.Groovy;
 import org.sonar.plugins.groovy.foundation.GroovyFileSystem;
+import org.sonar.plugins.groovy.foundation.ParallelTasks;
+import org.sonar.plugins.groovy.foundation.ReportFiles;
 
 import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class CoberturaSensor implements Sensor, CoverageExtension {
 
   private static final Logger LOG = LoggerFactory.getLogger(CoberturaSensor.class);
 
-  private final Settings settings;
+  private final Groovy groovy;
   private final FileSystem fileSystem;
+  private final PathResolver pathResolver;
   private final GroovyFileSystem groovyFileSystem;
 
-  public CoberturaSensor(Settings settings, FileSystem fileSystem) {
-    this.settings = settings;
+  public CoberturaSensor(Groovy groovy, FileSystem fileSystem, PathResolver pathResolver) {
+    this.groovy = groovy;
     this.fileSystem = fileSystem;
+    this.pathResolver = pathResolver;
     this.groovyFileSystem = new GroovyFileSystem(fileSystem);
   }
 
@@ -53,24 +66,58 @@ public class CoberturaSensor implements Sensor, CoverageExtension {
 
   @Override
   public void analyse(Project project, SensorContext context) {
-    String reportPath = settings.getString(GroovyPlugin.COBERTURA_REPORT_PATH);
+    String reportPath = groovy.getCoberturaReportPath();
 
     if (reportPath != null) {
-      File xmlFile = new File(reportPath);
-      if (!xmlFile.isAbsolute()) {
-        xmlFile = new File(fileSystem.baseDir(), reportPath);
+      List<File> reports = Lists.newArrayList();
+      for (File report : ReportFiles.resolve(pathResolver, fileSystem.baseDir(), reportPath)) {
+        if (report.isFile()) {
+          reports.add(report);
+        } else {
+          LOG.info("Cobertura xml report not found: " + report.getPath());
+        }
       }
-      if (xmlFile.exists()) {
-        LOG.info("Analyzing Cobertura report: " + reportPath);
-        new CoberturaReportParser(context, fileSystem).parseReport(xmlFile);
+      if (reports.isEmpty()) {
+        LOG.info("No Cobertura xml report found for: " + reportPath);
       } else {
-        LOG.info("Cobertura xml report not found: " + reportPath);
+        saveMeasures(context, parseReports(reports));
       }
     } else {
       LOG.info("No Cobertura report provided (see '" + GroovyPlugin.COBERTURA_REPORT_PATH + "' property)");
     }
   }
 
+  /**
+   * Parses the reports concurrently, then merges the coverage of files covered by several reports.
+   */
+  private Map<InputFile, CoverageMeasuresBuilder> parseReports(List<File> reports) {
+    List<Callable<Map<InputFile, CoverageMeasuresBuilder>>> tasks = Lists.newArrayList();
+    for (final File report : reports) {
+      tasks.add(new Callable<Map<InputFile, CoverageMeasuresBuilder>>() {
+        @Override
+        public Map<InputFile, CoverageMeasuresBuilder> call() {
+          LOG.info("Analyzing Cobertura report: " + report.getPath());
+          return new CoberturaReportParser(groovyFileSystem).parseReport(report);
+        }
+      });
+    }
+    Map<InputFile, CoverageMeasuresBuilder> coverageByFile = Maps.newLinkedHashMap();
+    for (Map<InputFile, CoverageMeasuresBuilder> reportCoverage : ParallelTasks.run(groovy.getCoberturaThreads(), tasks)) {
+      for (Map.Entry<InputFile, CoverageMeasuresBuilder> fileCoverage : reportCoverage.entrySet()) {
+        CoberturaReportParser.addCoverage(coverageByFile, fileCoverage.getKey(), fileCoverage.getValue());
+      }
+    }
+    return coverageByFile;
+  }
+
+  private static void saveMeasures(SensorContext context, Map<InputFile, CoverageMeasuresBuilder> coverageByFile) {
+    for (Map.Entry<InputFile, CoverageMeasuresBuilder> fileCoverage : coverageByFile.entrySet()) {
+      for (Measure measure : fileCoverage.getValue().createMeasures()) {
+        context.saveMeasure(fileCoverage.getKey(), measure);
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return "Groovy CoberturaSensor";
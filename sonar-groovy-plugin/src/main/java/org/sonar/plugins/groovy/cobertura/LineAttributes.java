@@ -0,0 +1,136 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.cobertura;
+
+import org.sonar.api.utils.XmlParserException;
+
+/**
+ * Decodes the attributes of the line elements of Cobertura reports by scanning their values,
+ * without the intermediate strings and number formats of a generic parsing.
+ */
+final class LineAttributes {
+
+  private LineAttributes() {
+  }
+
+  /**
+   * Decodes a line number, as {@link Integer#parseInt(String)} would.
+   */
+  static int number(String value) {
+    return parseInt(value, 0, value.length());
+  }
+
+  /**
+   * Decodes a number of hits, as an english number format would: grouping separators are ignored,
+   * decimals are truncated and numbers too large for an int are capped.
+   */
+  static int hits(String value) {
+    int length = value.length();
+    int index = 0;
+    while (index < length && Character.isWhitespace(value.charAt(index))) {
+      index++;
+    }
+    boolean negative = index < length && value.charAt(index) == '-';
+    if (negative) {
+      index++;
+    }
+    long hits = 0;
+    boolean hasDigit = false;
+    for (; index < length; index++) {
+      char c = value.charAt(index);
+      if (c >= '0' && c <= '9') {
+        hasDigit = true;
+        hits = Math.min(hits * 10 + (c - '0'), Integer.MAX_VALUE + 1L);
+      } else if (c != ',') {
+        break;
+      }
+    }
+    if (!hasDigit) {
+      throw new XmlParserException("Invalid number of hits: " + value);
+    }
+    return (int) (negative ? Math.max(-hits, Integer.MIN_VALUE) : Math.min(hits, Integer.MAX_VALUE));
+  }
+
+  /**
+   * @param value condition coverage such as {@code 50% (1/2)}
+   * @return the number of conditions, 2 in the example
+   */
+  static int conditions(String value) {
+    int slash = value.indexOf('/', openingParenthesis(value));
+    int end = value.indexOf(')', slash);
+    if (slash < 0 || end < 0) {
+      throw new XmlParserException("Invalid condition coverage: " + value);
+    }
+    return parseInt(value, slash + 1, end);
+  }
+
+  /**
+   * @param value condition coverage such as {@code 50% (1/2)}
+   * @return the number of covered conditions, 1 in the example
+   */
+  static int coveredConditions(String value) {
+    int start = openingParenthesis(value) + 1;
+    int slash = value.indexOf('/', start);
+    if (slash < 0) {
+      throw new XmlParserException("Invalid condition coverage: " + value);
+    }
+    return parseInt(value, start, slash);
+  }
+
+  private static int openingParenthesis(String value) {
+    int parenthesis = value.indexOf('(');
+    if (parenthesis < 0) {
+      throw new XmlParserException("Invalid condition coverage: " + value);
+    }
+    return parenthesis;
+  }
+
+  private static int parseInt(String value, int start, int end) {
+    int index = start;
+    boolean negative = index < end && value.charAt(index) == '-';
+    if (negative || (index < end && value.charAt(index) == '+')) {
+      index++;
+    }
+    if (index == end) {
+      throw invalidNumber(value, start, end);
+    }
+    long result = 0;
+    for (; index < end; index++) {
+      char c = value.charAt(index);
+      if (c < '0' || c > '9') {
+        throw invalidNumber(value, start, end);
+      }
+      result = result * 10 + (c - '0');
+      if (result > Integer.MAX_VALUE + 1L) {
+        throw invalidNumber(value, start, end);
+      }
+    }
+    result = negative ? -result : result;
+    if (result > Integer.MAX_VALUE) {
+      throw invalidNumber(value, start, end);
+    }
+    return (int) result;
+  }
+
+  private static NumberFormatException invalidNumber(String value, int start, int end) {
+    return new NumberFormatException("For input string: \"" + value.substring(start, end) + "\"");
+  }
+
+}
@@ -19,10 +19,16 @@
  */
 package org.sonar.plugins.groovy.codenarc;
 
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.codenarc.CodeNarcRunner;
 import org.codenarc.rule.Violation;
+import org.codenarc.ruleset.PropertiesFileRuleSetConfigurer;
+import org.codenarc.ruleset.RuleSet;
+import org.codenarc.ruleset.XmlFileRuleSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Sensor;
@@ -40,16 +46,18 @@ import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RuleQuery;
 import org.sonar.plugins.groovy.GroovyPlugin;
 import org.sonar.plugins.groovy.codenarc.CodeNarcXMLParser.CodeNarcViolation;
+import org.sonar.plugins.groovy.codenarc.CodeNarcXMLParser.ViolationHandler;
+import org.sonar.plugins.groovy.foundation.AnalysisCache;
 import org.sonar.plugins.groovy.foundation.Groovy;
 import org.sonar.plugins.groovy.foundation.GroovyFileSystem;
+import org.sonar.plugins.groovy.foundation.GroovySourceCache;
 
 import javax.annotation.CheckForNull;
-import javax.annotation.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -59,27 +67,38 @@ public class CodeNarcSensor implements Sensor {
 
   private static final Logger LOG = LoggerFactory.getLogger(CodeNarcSensor.class);
 
+  private static final String CODENARC_CACHE = "codenarc";
+
   private final ResourcePerspectives perspectives;
   private final FileSystem fileSystem;
   private final RulesProfile rulesProfile;
   private final RuleFinder ruleFinder;
   private final GroovyFileSystem groovyFileSystem;
+  private final GroovySourceCache sourceCache;
+  private final AnalysisCache analysisCache;
 
   private final String codeNarcReportPath;
+  private final int codeNarcThreads;
+  private final Map<String, RuleKey> ruleKeysByConfigKey = Maps.newHashMap();
 
   public CodeNarcSensor(
     Groovy groovy,
     ResourcePerspectives perspectives,
     FileSystem fileSystem,
     RulesProfile profile,
-    RuleFinder ruleFinder) {
+    RuleFinder ruleFinder,
+    GroovySourceCache sourceCache,
+    AnalysisCache analysisCache) {
     this.perspectives = perspectives;
     this.fileSystem = fileSystem;
     this.rulesProfile = profile;
     this.ruleFinder = ruleFinder;
     this.groovyFileSystem = new GroovyFileSystem(fileSystem);
+    this.sourceCache = sourceCache;
+    this.analysisCache = analysisCache;
 
     this.codeNarcReportPath = groovy.getCodeNarcReportPath();
+    this.codeNarcThreads = groovy.getCodeNarcThreads();
   }
 
   @Override
@@ -89,6 +108,7 @@ public class CodeNarcSensor implements Sensor {
 
   @Override
   public void analyse(Project project, SensorContext context) {
+    ruleKeysByConfigKey.clear();
     // Should we reuse existing report from CodeNarc ?
     if (StringUtils.isNotBlank(codeNarcReportPath)) {
       // Yes
@@ -109,22 +129,22 @@ public class CodeNarcSensor implements Sensor {
 
   private void parseReport(List<File> reports) {
     for (File report : reports) {
-      Collection<CodeNarcViolation> violations = CodeNarcXMLParser.parse(report, fileSystem);
-      for (CodeNarcViolation violation : violations) {
-        RuleQuery ruleQuery = RuleQuery.create().withRepositoryKey(CodeNarcRulesDefinition.REPOSITORY_KEY).withConfigKey(violation.getRuleName());
-        Rule rule = ruleFinder.find(ruleQuery);
-        if (rule != null) {
-          insertIssue(violation, rule, issuableFor(violation.getFilename()));
-        } else {
-          LOG.warn("No such rule in Sonar, so violation from CodeNarc will be ignored: ", violation.getRuleName());
+      CodeNarcXMLParser.parse(report, fileSystem, new ViolationHandler() {
+        @Override
+        public void handle(CodeNarcViolation violation) {
+          Issuable issuable = issuableFor(violation.getFilename());
+          if (issuable != null) {
+            insertIssue(violation, issuable);
+          }
         }
-      }
+      });
     }
   }
 
-  private static void insertIssue(CodeNarcViolation violation, Rule rule, @Nullable Issuable issuable) {
-    if (issuable != null) {
-      insertIssue(rule.ruleKey(), violation.getLine(), violation.getMessage(), issuable);
+  private void insertIssue(CodeNarcViolation violation, Issuable issuable) {
+    RuleKey ruleKey = ruleKey(violation.getRuleName());
+    if (ruleKey != null) {
+      insertIssue(ruleKey, violation.getLine(), violation.getMessage(), issuable);
     }
   }
 
@@ -143,50 +163,127 @@ public class CodeNarcSensor implements Sensor {
     File workdir = new File(fileSystem.workDir(), "/codenarc/");
     prepareWorkDir(workdir);
     File codeNarcConfiguration = new File(workdir, "profile.xml");
-    exportCodeNarcConfiguration(codeNarcConfiguration);
+    String profileHash = AnalysisCache.key(exportCodeNarcConfiguration(codeNarcConfiguration));
+
+    List<File> sourceFiles = groovyFileSystem.sourceFiles();
+    Map<File, List<CodeNarcViolation>> cachedViolations = Maps.newHashMap();
+    List<File> filesToAnalyze = Lists.newArrayList();
+    for (File file : sourceFiles) {
+      CodeNarcViolation[] cached = analysisCache.get(CODENARC_CACHE, cacheKey(file, profileHash), CodeNarcViolation[].class);
+      if (cached != null) {
+        cachedViolations.put(file, Arrays.asList(cached));
+      } else {
+        filesToAnalyze.add(file);
+      }
+    }
+
+    Map<File, List<Violation>> analyzedViolations = Collections.emptyMap();
+    if (!filesToAnalyze.isEmpty()) {
+      analyzedViolations = runCodeNarc(codeNarcConfiguration, filesToAnalyze);
+    }
 
+    Map<File, List<CodeNarcViolation>> violationsByFile = Maps.newLinkedHashMap();
+    for (File file : sourceFiles) {
+      List<CodeNarcViolation> violations = cachedViolations.get(file);
+      if (violations == null && analyzedViolations.containsKey(file)) {
+        violations = toCodeNarcViolations(file, analyzedViolations.get(file));
+        analysisCache.put(CODENARC_CACHE, cacheKey(file, profileHash), violations.toArray(new CodeNarcViolation[violations.size()]));
+      }
+      if (violations != null) {
+        violationsByFile.put(file, violations);
+      }
+    }
+    reportViolations(violationsByFile);
+  }
+
+  private Map<File, List<Violation>> runCodeNarc(File codeNarcConfiguration, List<File> sourceFiles) {
     CodeNarcRunner runner = new CodeNarcRunner();
-    runner.setRuleSetFiles("file:" + codeNarcConfiguration.getAbsolutePath());
+    final String ruleSetFile = "file:" + codeNarcConfiguration.getAbsolutePath();
+    runner.setRuleSetFiles(ruleSetFile);
 
-    CodeNarcSourceAnalyzer analyzer = new CodeNarcSourceAnalyzer(groovyFileSystem.sourceFiles());
+    // each worker loads its own rules, configured as the runner does
+    Supplier<RuleSet> ruleSets = new Supplier<RuleSet>() {
+      @Override
+      public RuleSet get() {
+        RuleSet ruleSet = new XmlFileRuleSet(ruleSetFile);
+        new PropertiesFileRuleSetConfigurer().configure(ruleSet);
+        return ruleSet;
+      }
+    };
+    CodeNarcSourceAnalyzer analyzer = new CodeNarcSourceAnalyzer(sourceFiles, sourceCache, codeNarcThreads, ruleSets);
     runner.setSourceAnalyzer(analyzer);
     runner.execute();
-    reportViolations(analyzer.getViolationsByFile());
+    return analyzer.getViolationsByFile();
   }
 
-  private void reportViolations(Map<File, List<Violation>> violationsByFile) {
-    for (Entry<File, List<Violation>> violationsOnFile : violationsByFile.entrySet()) {
+  private static List<CodeNarcViolation> toCodeNarcViolations(File file, List<Violation> violations) {
+    List<CodeNarcViolation> result = Lists.newArrayListWithCapacity(violations.size());
+    for (Violation violation : violations) {
+      result.add(new CodeNarcViolation(violation.getRule().getName(), file.getAbsolutePath(), violation.getLineNumber(), violation.getMessage()));
+    }
+    return result;
+  }
+
+  /**
+   * Key of the cached violations of a file, null when the file can not be read, in which case nothing is cached.
+   */
+  @CheckForNull
+  private String cacheKey(File file, String profileHash) {
+    if (!analysisCache.isEnabled()) {
+      return null;
+    }
+    try {
+      return AnalysisCache.key(file.getAbsolutePath(), sourceCache.get(file).getHash(), profileHash);
+    } catch (IOException e) {
+      LOG.debug("Unable to read " + file.getAbsolutePath(), e);
+      return null;
+    }
+  }
+
+  private void reportViolations(Map<File, List<CodeNarcViolation>> violationsByFile) {
+    for (Entry<File, List<CodeNarcViolation>> violationsOnFile : violationsByFile.entrySet()) {
       Issuable issuable = issuableFor(violationsOnFile.getKey().getAbsolutePath());
       if (issuable == null) {
         continue;
       }
-      for (Violation violation : violationsOnFile.getValue()) {
-        String ruleName = violation.getRule().getName();
-        RuleQuery ruleQuery = RuleQuery.create().withRepositoryKey(CodeNarcRulesDefinition.REPOSITORY_KEY).withConfigKey(ruleName);
-        Rule rule = ruleFinder.find(ruleQuery);
-        if (rule != null) {
-          insertIssue(rule.ruleKey(), violation.getLineNumber(), violation.getMessage(), issuable);
-        } else {
-          LOG.warn("No such rule in Sonar, so violation from CodeNarc will be ignored: ", ruleName);
-        }
+      for (CodeNarcViolation violation : violationsOnFile.getValue()) {
+        insertIssue(violation, issuable);
+      }
+    }
+  }
+
+  /**
+   * Rules are looked up once per analysis, unknown ones included so that they are reported only once.
+   */
+  @CheckForNull
+  private RuleKey ruleKey(String ruleName) {
+    if (!ruleKeysByConfigKey.containsKey(ruleName)) {
+      RuleQuery ruleQuery = RuleQuery.create().withRepositoryKey(CodeNarcRulesDefinition.REPOSITORY_KEY).withConfigKey(ruleName);
+      Rule rule = ruleFinder.find(ruleQuery);
+      if (rule == null) {
+        LOG.warn("No such rule in Sonar, so violations from CodeNarc will be ignored: {}", ruleName);
       }
+      ruleKeysByConfigKey.put(ruleName, rule == null ? null : rule.ruleKey());
     }
+    return ruleKeysByConfigKey.get(ruleName);
   }
 
   @CheckForNull
   private Issuable issuableFor(String path) {
-    InputFile sonarFile = fileSystem.inputFile(fileSystem.predicates().hasAbsolutePath(path));
+    InputFile sonarFile = groovyFileSystem.inputFileFromAbsolutePath(path);
     if (sonarFile != null) {
       return perspectives.as(Issuable.class, sonarFile);
     }
     return null;
   }
 
-  private void exportCodeNarcConfiguration(File file) {
+  private String exportCodeNarcConfiguration(File file) {
     try {
       StringWriter writer = new StringWriter();
       new CodeNarcProfileExporter(writer).exportProfile(rulesProfile);
-      FileUtils.writeStringToFile(file, writer.toString());
+      String configuration = writer.toString();
+      FileUtils.writeStringToFile(file, configuration);
+      return configuration;
     } catch (IOException e) {
       throw new IllegalStateException("Can not generate CodeNarc configuration file", e);
     }
@@ -19,8 +19,10 @@
  */
 package org.sonar.plugins.groovy.codenarc;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import org.codenarc.analyzer.AbstractSourceAnalyzer;
@@ -29,19 +31,49 @@ import org.codenarc.results.FileResults;
 import org.codenarc.results.Results;
 import org.codenarc.rule.Violation;
 import org.codenarc.ruleset.RuleSet;
-import org.codenarc.source.SourceFile;
+import org.codenarc.source.SourceCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.plugins.groovy.foundation.GroovySourceCache;
+import org.sonar.plugins.groovy.foundation.ParallelTasks;
+
+import javax.annotation.CheckForNull;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class CodeNarcSourceAnalyzer extends AbstractSourceAnalyzer {
 
-  private final Map<File, List<Violation>> violationsByFile = Maps.newHashMap();
+  private static final Logger LOG = LoggerFactory.getLogger(CodeNarcSourceAnalyzer.class);
+
+  private final Map<File, List<Violation>> violationsByFile = Maps.newLinkedHashMap();
   private final List<File> sourceFiles;
+  private final GroovySourceCache sourceCache;
+  private final int threads;
+  @CheckForNull
+  private final Supplier<RuleSet> ruleSets;
 
-  public CodeNarcSourceAnalyzer(List<File> sourceFiles) {
+  public CodeNarcSourceAnalyzer(List<File> sourceFiles, GroovySourceCache sourceCache) {
     this.sourceFiles = sourceFiles;
+    this.sourceCache = sourceCache;
+    this.threads = 1;
+    this.ruleSets = null;
+  }
+
+  /**
+   * CodeNarc rules are not guaranteed to be thread-safe, some of them keeping state while visiting a file:
+   * each worker applies its own instances of the rules, built by {@code ruleSets}.
+   * @param threads number of files analyzed concurrently
+   * @param ruleSets new instances of the rule set given to {@link #analyze(RuleSet)}
+   */
+  public CodeNarcSourceAnalyzer(List<File> sourceFiles, GroovySourceCache sourceCache, int threads, Supplier<RuleSet> ruleSets) {
+    this.sourceFiles = sourceFiles;
+    this.sourceCache = sourceCache;
+    this.threads = threads;
+    this.ruleSets = ruleSets;
   }
 
   @Override
@@ -54,17 +86,58 @@ public class CodeNarcSourceAnalyzer extends AbstractSourceAnalyzer {
     return directoryResults;
   }
 
-  private Multimap<File, FileResults> processFiles(RuleSet ruleSet) {
+  private Multimap<File, FileResults> processFiles(final RuleSet ruleSet) {
+    final boolean concurrent = threads > 1 && ruleSets != null;
+    final ThreadLocal<RuleSet> ruleSetOfWorker = new ThreadLocal<RuleSet>() {
+      @Override
+      protected RuleSet initialValue() {
+        return ruleSets.get();
+      }
+    };
+    List<Callable<List<Violation>>> tasks = Lists.newArrayListWithCapacity(sourceFiles.size());
+    for (final File file : sourceFiles) {
+      tasks.add(new Callable<List<Violation>>() {
+        @Override
+        public List<Violation> call() {
+          return processFile(file, concurrent ? ruleSetOfWorker.get() : ruleSet);
+        }
+      });
+    }
+    // results come back in the order of the source files, whatever the number of threads
+    List<List<Violation>> violationsPerFile = ParallelTasks.run(concurrent ? threads : 1, tasks);
+
     Multimap<File, FileResults> results = LinkedListMultimap.create();
-    for (File file : sourceFiles) {
-      List<Violation> violations = collectViolations(new SourceFile(file), ruleSet);
-      violationsByFile.put(file, violations);
-      FileResults result = new FileResults(file.getAbsolutePath(), violations);
-      results.put(file.getParentFile(), result);
+    for (int i = 0; i < sourceFiles.size(); i++) {
+      File file = sourceFiles.get(i);
+      List<Violation> violations = violationsPerFile.get(i);
+      if (violations != null) {
+        violationsByFile.put(file, violations);
+        FileResults result = new FileResults(file.getAbsolutePath(), violations);
+        results.put(file.getParentFile(), result);
+      }
     }
     return results;
   }
 
+  @CheckForNull
+  private List<Violation> processFile(File file, RuleSet ruleSet) {
+    SourceCode sourceCode = sourceCode(file);
+    if (sourceCode == null) {
+      return null;
+    }
+    return collectViolations(sourceCode, ruleSet);
+  }
+
+  @CheckForNull
+  private SourceCode sourceCode(File file) {
+    try {
+      return new CachedSourceFile(sourceCache.get(file));
+    } catch (IOException e) {
+      LOG.warn("Unable to read file: " + file.getAbsolutePath(), e);
+      return null;
+    }
+  }
+
   @Override
   public List getSourceDirectories() {
     return ImmutableList.of();
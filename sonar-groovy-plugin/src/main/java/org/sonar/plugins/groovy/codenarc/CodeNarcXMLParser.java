@@ -21,36 +21,58 @@ package org.sonar.plugins.groovy.codenarc;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.staxmate.in.SMHierarchicCursor;
 import org.codehaus.staxmate.in.SMInputCursor;
-import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile.Type;
 import org.sonar.api.utils.StaxParser;
+import org.sonar.plugins.groovy.foundation.GroovyFileSystem;
 
+import javax.annotation.Nullable;
 import javax.xml.stream.XMLStreamException;
 
 import java.io.File;
+import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 public final class CodeNarcXMLParser implements StaxParser.XmlStreamHandler {
 
-  private final ImmutableList.Builder<CodeNarcViolation> result = ImmutableList.builder();
-  private final FileSystem fileSystem;
+  private final GroovyFileSystem groovyFileSystem;
+  private final ViolationHandler violationHandler;
+  /**
+   * Source directory where the files of each package were last found, tried first for the next files of the package.
+   */
+  private final Map<String, String> sourceDirectoryByPackage = Maps.newHashMap();
 
-  private CodeNarcXMLParser(final FileSystem fileSystem) {
-    this.fileSystem = fileSystem;
+  private CodeNarcXMLParser(final FileSystem fileSystem, ViolationHandler violationHandler) {
+    this.groovyFileSystem = new GroovyFileSystem(fileSystem);
+    this.violationHandler = violationHandler;
   }
 
   public static List<CodeNarcViolation> parse(File file, FileSystem fileSystem) {
-    CodeNarcXMLParser handler = new CodeNarcXMLParser(fileSystem);
+    final ImmutableList.Builder<CodeNarcViolation> result = ImmutableList.builder();
+    parse(file, fileSystem, new ViolationHandler() {
+      @Override
+      public void handle(CodeNarcViolation violation) {
+        result.add(violation);
+      }
+    });
+    return result.build();
+  }
+
+  /**
+   * Streams the violations of the report to the given handler as soon as they are read,
+   * so that the memory used does not depend on the size of the report.
+   */
+  public static void parse(File file, FileSystem fileSystem, ViolationHandler violationHandler) {
+    CodeNarcXMLParser handler = new CodeNarcXMLParser(fileSystem, violationHandler);
     try {
       new StaxParser(handler).parse(file);
     } catch (XMLStreamException e) {
       throw new IllegalStateException("Unabel to parse file: " + file, e);
     }
-    return handler.result.build();
   }
 
   @Override
@@ -81,34 +103,49 @@ public final class CodeNarcXMLParser implements StaxParser.XmlStreamHandler {
             SMInputCursor messageCursor = violation.childElementCursor("Message");
             String message = messageCursor.getNext() == null ? "" : messageCursor.collectDescendantText(true);
 
-            result.add(new CodeNarcViolation(ruleName, filename, lineNumber, message));
+            violationHandler.handle(new CodeNarcViolation(ruleName, filename, lineNumber, message));
           }
         }
       }
     }
   }
 
-  private String getFilename(List<String> sourceDirectories, String packPath, String attrFilename) throws XMLStreamException {
-    FilePredicates pred = fileSystem.predicates();
+  private String getFilename(List<String> sourceDirectories, String packPath, String attrFilename) {
+    String relativePath = packPath + "/" + attrFilename;
+    String packageDirectory = sourceDirectoryByPackage.get(packPath);
+    if (packageDirectory != null && groovyFileSystem.isMainFile(packageDirectory + relativePath)) {
+      return packageDirectory + relativePath;
+    }
     for (String directory : sourceDirectories) {
-      String path = directory + packPath + "/" + attrFilename;
-      if (fileSystem.hasFiles(pred.and(pred.hasType(Type.MAIN), pred.hasAbsolutePath(path)))) {
+      String path = directory + relativePath;
+      if (groovyFileSystem.isMainFile(path)) {
+        sourceDirectoryByPackage.put(packPath, directory);
         return path;
       }
     }
-    return packPath + "/" + attrFilename;
+    return relativePath;
   }
 
-  public static class CodeNarcViolation {
+  public interface ViolationHandler {
+    void handle(CodeNarcViolation violation);
+  }
+
+  public static class CodeNarcViolation implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final String ruleName;
     private final String filename;
     private final Integer line;
     private final String message;
 
     public CodeNarcViolation(String ruleName, String filename, String lineNumber, String message) {
+      this(ruleName, filename, StringUtils.isBlank(lineNumber) ? null : Integer.parseInt(lineNumber), message);
+    }
+
+    public CodeNarcViolation(String ruleName, String filename, @Nullable Integer line, String message) {
       this.ruleName = ruleName;
       this.filename = filename;
-      this.line = StringUtils.isBlank(lineNumber) ? null : Integer.parseInt(lineNumber);
+      this.line = line;
       this.message = message;
     }
 
@@ -0,0 +1,222 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.foundation;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.groovy.GroovyPlugin;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Results of previous analyses, persisted in the working directory, so that files which did not change
+ * since the previous analysis do not have to be analyzed again.
+ * Each entry is identified by a key built by the caller from everything the result depends on
+ * (content of the file, configuration, ...), the versions of the plugin, CodeNarc and GMetrics being always part of it.
+ * <p>
+ * Stale entries are removed: the whole cache when the versions change, and the entries which were neither read
+ * nor written during the analysis when it ends, such as those of modified files.
+ */
+public class AnalysisCache implements BatchExtension {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisCache.class);
+
+  /**
+   * To be incremented when the layout of cached classes changes.
+   */
+  private static final String CACHE_FORMAT_VERSION = "1";
+  /**
+   * Filtered by Maven with the versions of the plugin and of the analyzers.
+   */
+  private static final String VERSIONS_RESOURCE = "/org/sonar/plugins/groovy/versions.properties";
+  private static final String UNKNOWN_VERSION = "dev";
+  private static final String VERSION_FILE = "version";
+  private static final String ENTRY_SUFFIX = ".ser";
+
+  private final boolean enabled;
+  private final File cacheDir;
+  private final String version;
+  private final Set<File> usedEntries = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+  private boolean versionChecked = false;
+
+  public AnalysisCache(Settings settings, FileSystem fileSystem) {
+    this(settings, fileSystem, toolVersions());
+  }
+
+  /**
+   * @param toolVersions versions of the plugin and of the analyzers whose results are cached
+   */
+  AnalysisCache(Settings settings, FileSystem fileSystem, String toolVersions) {
+    this.enabled = settings.getBoolean(GroovyPlugin.ANALYSIS_CACHE_ENABLED);
+    this.cacheDir = new File(fileSystem.workDir(), "groovy-cache");
+    this.version = CACHE_FORMAT_VERSION + "/" + toolVersions;
+  }
+
+  static String toolVersions() {
+    Properties versions = new Properties();
+    InputStream input = AnalysisCache.class.getResourceAsStream(VERSIONS_RESOURCE);
+    try {
+      if (input != null) {
+        versions.load(input);
+      }
+    } catch (IOException e) {
+      LOG.debug("Unable to read " + VERSIONS_RESOURCE, e);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+    return Joiner.on('/').join(
+      version(versions, "plugin.version"),
+      version(versions, "codenarc.version"),
+      version(versions, "gmetrics.version"));
+  }
+
+  private static String version(Properties versions, String key) {
+    String value = versions.getProperty(key);
+    // not filtered when the plugin is not built by Maven
+    return value == null || value.contains("${") ? UNKNOWN_VERSION : value;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Hash of the given parts, to be used as key of an entry.
+   */
+  public static String key(Object... parts) {
+    return Hashing.sha1().hashString(Joiner.on('\n').useForNull("").join(parts), Charsets.UTF_8).toString();
+  }
+
+  /**
+   * @param key null when no key could be computed, in which case there is no entry
+   */
+  @CheckForNull
+  public <T extends Serializable> T get(String kind, @Nullable String key, Class<T> type) {
+    if (!enabled || key == null) {
+      return null;
+    }
+    File file = entryFile(kind, key);
+    usedEntries.add(file);
+    if (!file.isFile()) {
+      return null;
+    }
+    ObjectInputStream input = null;
+    try {
+      input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+      Object value = input.readObject();
+      return type.isInstance(value) ? type.cast(value) : null;
+    } catch (IOException | ClassNotFoundException e) {
+      LOG.debug("Ignoring unreadable cache entry " + file, e);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  public void put(String kind, @Nullable String key, Serializable value) {
+    if (!enabled || key == null) {
+      return;
+    }
+    File file = entryFile(kind, key);
+    usedEntries.add(file);
+    try {
+      FileUtils.forceMkdir(file.getParentFile());
+      try (ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+        output.writeObject(value);
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to write cache entry " + file, e);
+      FileUtils.deleteQuietly(file);
+    }
+  }
+
+  /**
+   * Removes the entries which were not used during the analysis, called by the container when the analysis ends.
+   */
+  public void stop() {
+    if (!enabled) {
+      return;
+    }
+    File[] kindDirs = cacheDir.listFiles();
+    if (kindDirs == null) {
+      return;
+    }
+    int removed = 0;
+    for (File kindDir : kindDirs) {
+      File[] entries = kindDir.listFiles();
+      for (File entry : entries == null ? new File[0] : entries) {
+        if (entry.getName().endsWith(ENTRY_SUFFIX) && !usedEntries.contains(entry) && entry.delete()) {
+          removed++;
+        }
+      }
+    }
+    LOG.debug("{} unused analysis cache entries removed", removed);
+  }
+
+  private File entryFile(String kind, String key) {
+    checkVersion();
+    return new File(new File(cacheDir, kind), key(version, key) + ENTRY_SUFFIX);
+  }
+
+  /**
+   * Wipes the cache written by other versions, whose entries can not be used anymore.
+   */
+  private synchronized void checkVersion() {
+    if (versionChecked) {
+      return;
+    }
+    versionChecked = true;
+    File versionFile = new File(cacheDir, VERSION_FILE);
+    try {
+      if (versionFile.isFile() && version.equals(FileUtils.readFileToString(versionFile, Charsets.UTF_8.name()))) {
+        return;
+      }
+      FileUtils.deleteDirectory(cacheDir);
+      FileUtils.writeStringToFile(versionFile, version, Charsets.UTF_8.name());
+    } catch (IOException e) {
+      LOG.warn("Unable to reset analysis cache " + cacheDir, e);
+    }
+  }
+
+}
@@ -84,6 +84,52 @@ public class Groovy extends AbstractLanguage {
     return settings.getString(GroovyPlugin.CODENARC_REPORT_PATH);
   }
 
+  /**
+   * Number of threads used to run CodeNarc, one per available core by default.
+   */
+  public int getCodeNarcThreads() {
+    return ParallelTasks.threadCount(settings.getInt(GroovyPlugin.CODENARC_THREADS));
+  }
+
+  public String getCoberturaReportPath() {
+    return settings.getString(GroovyPlugin.COBERTURA_REPORT_PATH);
+  }
+
+  /**
+   * Number of threads used to parse Cobertura reports, one per available core by default.
+   */
+  public int getCoberturaThreads() {
+    return ParallelTasks.threadCount(settings.getInt(GroovyPlugin.COBERTURA_THREADS));
+  }
+
+  /**
+   * Number of threads used to compute size and complexity metrics, one per available core by default.
+   */
+  public int getGMetricsThreads() {
+    return ParallelTasks.threadCount(settings.getInt(GroovyPlugin.GMETRICS_THREADS));
+  }
+
+  /**
+   * Number of threads used to parse Surefire reports, one per available core by default.
+   */
+  public int getSurefireThreads() {
+    return ParallelTasks.threadCount(settings.getInt(GroovyPlugin.SUREFIRE_THREADS));
+  }
+
+  /**
+   * Length above which stack traces of failed tests are truncated, 0 or less when they are kept whole.
+   */
+  public int getSurefireMaxStackTraceLength() {
+    return settings.getInt(GroovyPlugin.SUREFIRE_MAX_STACK_TRACE_LENGTH);
+  }
+
+  /**
+   * Whether test cases are saved as soon as their report is parsed rather than once all reports are parsed.
+   */
+  public boolean isSurefireStreamingSave() {
+    return settings.getBoolean(GroovyPlugin.SUREFIRE_STREAMING_SAVE);
+  }
+
   public List<String> getBinaryDirectories() {
     String[] binaries = settings.getStringArray(GroovyPlugin.SONAR_GROOVY_BINARIES);
     if (ArrayUtils.isEmpty(binaries)) {
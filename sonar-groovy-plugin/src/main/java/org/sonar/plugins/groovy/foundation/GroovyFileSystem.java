@@ -20,6 +20,9 @@
 package org.sonar.plugins.groovy.foundation;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.FileSystem;
@@ -27,10 +30,16 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFile.Type;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Access to the Groovy files of the analysed module.
+ * Lookups of input files use indexes built from the file system on first use, so files added afterwards are not found.
+ */
 public class GroovyFileSystem {
 
   private final FileSystem fileSystem;
@@ -38,6 +47,12 @@ public class GroovyFileSystem {
   private final FilePredicate isGroovyLanguage;
   private final FilePredicate isMainTypeFile;
 
+  private Map<String, InputFile> inputFilesByAbsolutePath;
+  /**
+   * Main Groovy files by every suffix of their relative path, mapped to null when the suffix is shared by several files.
+   */
+  private Map<String, InputFile> sourceInputFilesByPathSuffix;
+
   public GroovyFileSystem(FileSystem fileSystem) {
     this.fileSystem = fileSystem;
     this.predicates = fileSystem.predicates();
@@ -55,8 +70,70 @@ public class GroovyFileSystem {
   }
 
   @CheckForNull
-  public InputFile sourceInputFileFromRelativePath(String relativePath) {
-    return fileSystem.inputFile(predicates.and(predicates.matchesPathPattern("**/" + relativePath), isGroovyLanguage, isMainTypeFile));
+  public InputFile inputFile(File file) {
+    return inputFileFromAbsolutePath(file.getPath());
+  }
+
+  @CheckForNull
+  public InputFile inputFileFromAbsolutePath(String absolutePath) {
+    return inputFilesByAbsolutePath().get(absolutePathKey(absolutePath));
+  }
+
+  public boolean isMainFile(String absolutePath) {
+    InputFile inputFile = inputFileFromAbsolutePath(absolutePath);
+    return inputFile != null && inputFile.type() == Type.MAIN;
+  }
+
+  /**
+   * @return the main Groovy file whose relative path ends with the given path, or null if there is none or several ones
+   */
+  @CheckForNull
+  public InputFile sourceInputFileFromRelativePath(@Nullable String relativePath) {
+    if (relativePath == null) {
+      return null;
+    }
+    return sourceInputFilesByPathSuffix().get(StringUtils.removeStart(FilenameUtils.separatorsToUnix(relativePath), "/"));
+  }
+
+  @CheckForNull
+  public InputFile sourceInputFileFromPackage(String packagePath, String fileName) {
+    return sourceInputFileFromRelativePath(StringUtils.isEmpty(packagePath) ? fileName : (packagePath + "/" + fileName));
+  }
+
+  private synchronized Map<String, InputFile> inputFilesByAbsolutePath() {
+    if (inputFilesByAbsolutePath == null) {
+      Map<String, InputFile> byAbsolutePath = Maps.newHashMap();
+      for (InputFile inputFile : fileSystem.inputFiles(predicates.all())) {
+        byAbsolutePath.put(absolutePathKey(inputFile.absolutePath()), inputFile);
+      }
+      inputFilesByAbsolutePath = byAbsolutePath;
+    }
+    return inputFilesByAbsolutePath;
+  }
+
+  private synchronized Map<String, InputFile> sourceInputFilesByPathSuffix() {
+    if (sourceInputFilesByPathSuffix == null) {
+      Map<String, InputFile> byPathSuffix = Maps.newHashMap();
+      for (InputFile inputFile : fileSystem.inputFiles(predicates.and(isGroovyLanguage, isMainTypeFile))) {
+        String relativePath = inputFile.relativePath();
+        for (int start = 0; start >= 0; start = nextSuffixStart(relativePath, start)) {
+          String suffix = relativePath.substring(start);
+          byPathSuffix.put(suffix, byPathSuffix.containsKey(suffix) ? null : inputFile);
+        }
+      }
+      sourceInputFilesByPathSuffix = byPathSuffix;
+    }
+    return sourceInputFilesByPathSuffix;
+  }
+
+  private static int nextSuffixStart(String relativePath, int start) {
+    int separator = relativePath.indexOf('/', start);
+    return separator < 0 ? -1 : (separator + 1);
+  }
+
+  @CheckForNull
+  private static String absolutePathKey(String path) {
+    return FilenameUtils.normalize(new File(path).getAbsolutePath(), true);
   }
 
 }
@@ -0,0 +1,127 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.foundation;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.SourceUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Content of a Groovy source file, read once from disk and compiled once to an AST shared by GMetrics and CodeNarc.
+ * <p>
+ * The AST is a mutable tree, which is only safe to share because its consumers never walk it concurrently: each analyzer
+ * handles a file in a single task, and analyzers run one after the other. Its lazy parts are initialized once parsed,
+ * so that walking it does not modify it.
+ */
+public class GroovySource {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GroovySource.class);
+
+  private final File file;
+  private final String text;
+  private final long lastModified;
+  private final long length;
+
+  private String hash;
+  private ModuleNode ast;
+  private boolean astParsed = false;
+
+  GroovySource(File file, String text, long lastModified, long length) {
+    this.file = file;
+    this.text = text;
+    this.lastModified = lastModified;
+    this.length = length;
+  }
+
+  static GroovySource read(File file) throws IOException {
+    long lastModified = file.lastModified();
+    long length = file.length();
+    // default charset, as used by GMetrics and CodeNarc when they read the file themselves
+    String text = FileUtils.readFileToString(file);
+    return new GroovySource(file, text, lastModified, length);
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Hash of the content of the file.
+   */
+  public synchronized String getHash() {
+    if (hash == null) {
+      hash = Hashing.sha1().hashString(text, Charsets.UTF_8).toString();
+    }
+    return hash;
+  }
+
+  /**
+   * AST of the file after the conversion phase, as built by GMetrics and CodeNarc, compiled on first use.
+   * @return null if the file can not be compiled
+   */
+  @CheckForNull
+  public synchronized ModuleNode getAst() {
+    if (!astParsed) {
+      ast = parseAst();
+      astParsed = true;
+    }
+    return ast;
+  }
+
+  @CheckForNull
+  private ModuleNode parseAst() {
+    SourceUnit unit = SourceUnit.create("None", text);
+    try {
+      unit.parse();
+      unit.completePhase();
+      unit.convert();
+      ModuleNode moduleNode = unit.getAST();
+      // the class of a script is created on first access to the classes
+      moduleNode.getClasses();
+      return moduleNode;
+    } catch (CompilationFailedException e) {
+      LOG.warn("Compilation failed for file: " + file.getAbsolutePath(), e);
+      return null;
+    }
+  }
+
+  long getLastModified() {
+    return lastModified;
+  }
+
+  long getLength() {
+    return length;
+  }
+
+}
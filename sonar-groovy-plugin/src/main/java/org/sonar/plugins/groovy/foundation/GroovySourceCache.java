@@ -0,0 +1,126 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.foundation;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.groovy.GroovyPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Sources of the Groovy files shared by all the sensors of the analysis, so that each file is read from disk and
+ * compiled to an AST only once. Sources are keyed by the absolute path and the content hash of the file: the size and
+ * modification date of a file only tell whether it must be read again, a file rewritten with the same content keeping
+ * its AST.
+ * <p>
+ * The cache is bounded by the estimated memory of the text and AST of the sources it holds, a quarter of the heap by
+ * default, so that the sources read by the first sensor are usually still there for the next ones.
+ */
+public class GroovySourceCache implements BatchExtension {
+
+  private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+  /**
+   * Memory of a source, for each character of its text: the text itself, and its AST, which is usually an order
+   * of magnitude larger than the text.
+   */
+  static final int ESTIMATED_BYTES_PER_CHAR = 2 + 20;
+
+  private final Cache<String, GroovySource> sources;
+  private final ConcurrentMap<String, FileState> stateByPath = Maps.newConcurrentMap();
+
+  public GroovySourceCache(Settings settings) {
+    long maxSize = settings.getInt(GroovyPlugin.SOURCE_CACHE_MAX_SIZE) * BYTES_PER_MEGABYTE;
+    if (maxSize <= 0) {
+      maxSize = Runtime.getRuntime().maxMemory() / 4;
+    }
+    this.sources = CacheBuilder.newBuilder()
+      .maximumWeight(maxSize)
+      .weigher(new Weigher<String, GroovySource>() {
+        @Override
+        public int weigh(String key, GroovySource source) {
+          long weight = (long) source.getText().length() * ESTIMATED_BYTES_PER_CHAR;
+          return (int) Math.min(weight, Integer.MAX_VALUE);
+        }
+      })
+      .build();
+  }
+
+  public GroovySource get(File file) throws IOException {
+    String path = file.getAbsolutePath();
+    FileState state = stateByPath.get(path);
+    if (state != null && state.isUpToDate(file)) {
+      GroovySource source = sources.getIfPresent(key(path, state.hash));
+      if (source != null) {
+        return source;
+      }
+    }
+    final GroovySource read = GroovySource.read(file);
+    String hash = read.getHash();
+    stateByPath.put(path, new FileState(read.getLastModified(), read.getLength(), hash));
+    try {
+      // a source already cached with the same content is kept, along with its AST
+      return sources.get(key(path, hash), new Callable<GroovySource>() {
+        @Override
+        public GroovySource call() {
+          return read;
+        }
+      });
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public long size() {
+    return sources.size();
+  }
+
+  private static String key(String path, String hash) {
+    return path + ":" + hash;
+  }
+
+  /**
+   * Size and modification date of a file when it was last read, and the hash of its content.
+   */
+  private static class FileState {
+    private final long lastModified;
+    private final long length;
+    private final String hash;
+
+    FileState(long lastModified, long length, String hash) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.hash = hash;
+    }
+
+    boolean isUpToDate(File file) {
+      return file.lastModified() == lastModified && file.length() == length;
+    }
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.foundation;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent tasks on a fixed pool of workers. Results are always returned in the order of the tasks,
+ * whatever the number of threads, so that the outcome of an analysis does not depend on scheduling.
+ */
+public final class ParallelTasks {
+
+  private ParallelTasks() {
+  }
+
+  /**
+   * @param configuredThreads number of threads set by the user, 0 or less meaning one per available core.
+   */
+  public static int threadCount(int configuredThreads) {
+    return configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Executor to be shared by several calls to {@link #run(ExecutorService, List)}, and shut down by the caller.
+   * Tasks are run by the calling thread when a single thread is configured.
+   */
+  public static ExecutorService newExecutor(int threads) {
+    return threads > 1 ? Executors.newFixedThreadPool(threads) : MoreExecutors.sameThreadExecutor();
+  }
+
+  public static <T> List<T> run(int threads, List<? extends Callable<T>> tasks) {
+    if (threads <= 1 || tasks.size() <= 1) {
+      return runSequentially(tasks);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+    try {
+      return run(executor, tasks);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs the tasks on an executor owned by the caller, which is not shut down.
+   * Tasks must not themselves wait for tasks submitted to the same executor.
+   */
+  public static <T> List<T> run(ExecutorService executor, List<? extends Callable<T>> tasks) {
+    List<Future<T>> futures = Lists.newArrayListWithCapacity(tasks.size());
+    for (Callable<T> task : tasks) {
+      futures.add(executor.submit(task));
+    }
+    List<T> results = Lists.newArrayListWithCapacity(tasks.size());
+    for (Future<T> future : futures) {
+      results.add(get(future));
+    }
+    return results;
+  }
+
+  private static <T> List<T> runSequentially(List<? extends Callable<T>> tasks) {
+    List<T> results = Lists.newArrayListWithCapacity(tasks.size());
+    for (Callable<T> task : tasks) {
+      try {
+        results.add(task.call());
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return results;
+  }
+
+  private static <T> T get(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for parallel tasks", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.foundation;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.api.utils.WildcardPattern;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resolves the value of a report path property: a comma-separated list of paths, absolute or relative
+ * to the project base directory, which may contain wildcards such as {@code target/jacoco-*.exec} or {@code **}{@code /jacoco.exec}.
+ */
+public final class ReportFiles {
+
+  private ReportFiles() {
+  }
+
+  /**
+   * @return the files designated by the paths, existing or not for paths without wildcard
+   */
+  public static List<File> resolve(PathResolver pathResolver, File baseDir, @Nullable String paths) {
+    List<File> reports = Lists.newArrayList();
+    for (String path : StringUtils.split(StringUtils.defaultString(paths), ',')) {
+      String trimmedPath = path.trim();
+      if (StringUtils.containsAny(trimmedPath, "*?")) {
+        reports.addAll(matchingFiles(pathResolver, baseDir, FilenameUtils.separatorsToUnix(trimmedPath)));
+      } else if (!trimmedPath.isEmpty()) {
+        reports.add(pathResolver.relativeFile(baseDir, trimmedPath));
+      }
+    }
+    return reports;
+  }
+
+  /**
+   * @return the reports which are actual files
+   */
+  public static List<File> existing(List<File> reports) {
+    List<File> existingReports = Lists.newArrayList();
+    for (File report : reports) {
+      if (report != null && report.isFile()) {
+        existingReports.add(report);
+      }
+    }
+    return existingReports;
+  }
+
+  private static List<File> matchingFiles(PathResolver pathResolver, File baseDir, String pattern) {
+    int lastSlash = pattern.lastIndexOf('/', StringUtils.indexOfAny(pattern, "*?"));
+    File directory = pathResolver.relativeFile(baseDir, lastSlash < 0 ? "." : pattern.substring(0, lastSlash + 1));
+    if (directory == null || !directory.isDirectory()) {
+      return Collections.emptyList();
+    }
+    String filePattern = pattern.substring(lastSlash + 1);
+    WildcardPattern wildcardPattern = WildcardPattern.create(filePattern);
+    String directoryPath = StringUtils.removeEnd(FilenameUtils.separatorsToUnix(directory.getAbsolutePath()), "/") + "/";
+    Collection<File> candidates;
+    if (filePattern.contains("**")) {
+      candidates = FileUtils.listFiles(directory, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE);
+    } else {
+      // without "**", wildcards do not cross directories: only the depth named by the pattern is listed
+      candidates = Lists.newArrayList();
+      listFiles(directory, StringUtils.countMatches(filePattern, "/") + 1, candidates);
+    }
+    List<File> files = Lists.newArrayList();
+    for (File file : candidates) {
+      String relativePath = StringUtils.removeStart(FilenameUtils.separatorsToUnix(file.getAbsolutePath()), directoryPath);
+      if (wildcardPattern.match(relativePath)) {
+        files.add(file);
+      }
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  private static void listFiles(File directory, int depth, Collection<File> files) {
+    File[] children = directory.listFiles();
+    if (children == null) {
+      return;
+    }
+    for (File child : children) {
+      if (depth > 1 && child.isDirectory()) {
+        listFiles(child, depth - 1, files);
+      } else if (depth == 1 && child.isFile()) {
+        files.add(child);
+      }
+    }
+  }
+
+}
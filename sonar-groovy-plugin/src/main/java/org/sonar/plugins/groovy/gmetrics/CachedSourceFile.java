@@ -0,0 +1,50 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.gmetrics;
+
+import org.codehaus.groovy.ast.ModuleNode;
+import org.sonar.plugins.groovy.foundation.GroovySource;
+
+/**
+ * {@link org.gmetrics.source.SourceFile} backed by a {@link GroovySource}, so that GMetrics does not read the file again.
+ */
+public class CachedSourceFile extends org.gmetrics.source.SourceFile {
+
+  private final GroovySource source;
+
+  public CachedSourceFile(GroovySource source) {
+    super(source.getFile());
+    this.source = source;
+  }
+
+  @Override
+  public String getText() {
+    return source.getText();
+  }
+
+  /**
+   * AST compiled once for all the analyzers, see {@link GroovySource#getAst()}.
+   */
+  @Override
+  public ModuleNode getAst() {
+    return source.getAst();
+  }
+
+}
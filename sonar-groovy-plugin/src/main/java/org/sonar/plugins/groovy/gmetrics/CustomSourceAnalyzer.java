@@ -19,8 +19,12 @@
  */
 package org.sonar.plugins.groovy.gmetrics;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.ModuleNode;
 import org.gmetrics.analyzer.SourceAnalyzer;
@@ -31,24 +35,56 @@ import org.gmetrics.resultsnode.ClassResultsNode;
 import org.gmetrics.resultsnode.PackageResultsNode;
 import org.gmetrics.resultsnode.ResultsNode;
 import org.gmetrics.source.SourceCode;
-import org.gmetrics.source.SourceFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.plugins.groovy.foundation.GroovySourceCache;
+import org.sonar.plugins.groovy.foundation.ParallelTasks;
+
+import javax.annotation.CheckForNull;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Custom implementation of {@link org.gmetrics.analyzer.FilesystemSourceAnalyzer}.
  */
 public class CustomSourceAnalyzer implements SourceAnalyzer {
 
+  private static final Logger LOG = LoggerFactory.getLogger(CustomSourceAnalyzer.class);
+
   private final Multimap<File, ClassResultsNode> resultsByFile = ArrayListMultimap.create();
   private final String baseDirAbsolutePath;
   private final List<File> sourceFiles;
+  private final GroovySourceCache sourceCache;
+  private final ExecutorService executor;
+  @CheckForNull
+  private final Supplier<MetricSet> metricSets;
 
-  public CustomSourceAnalyzer(String baseDirAbsolutePath, List<File> sourceFiles) {
+  public CustomSourceAnalyzer(String baseDirAbsolutePath, List<File> sourceFiles, GroovySourceCache sourceCache) {
     this.baseDirAbsolutePath = baseDirAbsolutePath;
     this.sourceFiles = sourceFiles;
+    this.sourceCache = sourceCache;
+    this.executor = MoreExecutors.sameThreadExecutor();
+    this.metricSets = null;
+  }
+
+  /**
+   * GMetrics metrics are not guaranteed to be thread-safe: each worker applies its own instances of the metrics,
+   * built by {@code metricSets}.
+   * @param executor measures files concurrently, owned and shut down by the caller.
+   * @param metricSets new instances of the metric set given to {@link #analyze(MetricSet)}
+   */
+  public CustomSourceAnalyzer(String baseDirAbsolutePath, List<File> sourceFiles, GroovySourceCache sourceCache, ExecutorService executor,
+    Supplier<MetricSet> metricSets) {
+    this.baseDirAbsolutePath = baseDirAbsolutePath;
+    this.sourceFiles = sourceFiles;
+    this.sourceCache = sourceCache;
+    this.executor = executor;
+    this.metricSets = metricSets;
   }
 
   public Multimap<File, ClassResultsNode> getResultsByFile() {
@@ -65,23 +101,57 @@ public class CustomSourceAnalyzer implements SourceAnalyzer {
     return processFiles(metricSet);
   }
 
-  private PackageResultsNode processFiles(MetricSet metricSet) {
-    for (File file : sourceFiles) {
-      SourceCode sourceCode = new SourceFile(file);
-      ModuleNode ast = sourceCode.getAst();
-      if (ast != null) {
-        for (ClassNode classNode : ast.getClasses()) {
-          String className = classNode.getName();
-          ClassResultsNode classResults = new ClassResultsNode(className);
-          for (Object metric : metricSet.getMetrics()) {
-            ClassMetricResult classMetricResult = ((Metric) metric).applyToClass(classNode, sourceCode);
-            classResults.addClassMetricResult(classMetricResult);
-          }
-          resultsByFile.put(file, classResults);
-        }
+  private PackageResultsNode processFiles(final MetricSet metricSet) {
+    final ThreadLocal<MetricSet> metricSetOfWorker = new ThreadLocal<MetricSet>() {
+      @Override
+      protected MetricSet initialValue() {
+        return metricSets == null ? metricSet : metricSets.get();
       }
+    };
+    List<Callable<List<ClassResultsNode>>> tasks = Lists.newArrayListWithCapacity(sourceFiles.size());
+    for (final File file : sourceFiles) {
+      tasks.add(new Callable<List<ClassResultsNode>>() {
+        @Override
+        public List<ClassResultsNode> call() {
+          return processFile(file, metricSetOfWorker.get());
+        }
+      });
+    }
+    // results come back in the order of the source files, whatever the number of threads
+    List<List<ClassResultsNode>> resultsPerFile = ParallelTasks.run(executor, tasks);
+    for (int i = 0; i < sourceFiles.size(); i++) {
+      resultsByFile.putAll(sourceFiles.get(i), resultsPerFile.get(i));
     }
     // Only file results are used
     return null;
   }
+
+  private List<ClassResultsNode> processFile(File file, MetricSet metricSet) {
+    SourceCode sourceCode = sourceCode(file);
+    ModuleNode ast = sourceCode == null ? null : sourceCode.getAst();
+    if (ast == null) {
+      return ImmutableList.of();
+    }
+    List<ClassResultsNode> results = Lists.newArrayList();
+    for (ClassNode classNode : ast.getClasses()) {
+      String className = classNode.getName();
+      ClassResultsNode classResults = new ClassResultsNode(className);
+      for (Object metric : metricSet.getMetrics()) {
+        ClassMetricResult classMetricResult = ((Metric) metric).applyToClass(classNode, sourceCode);
+        classResults.addClassMetricResult(classMetricResult);
+      }
+      results.add(classResults);
+    }
+    return results;
+  }
+
+  @CheckForNull
+  private SourceCode sourceCode(File file) {
+    try {
+      return new CachedSourceFile(sourceCache.get(file));
+    } catch (IOException e) {
+      LOG.warn("Unable to read file: " + file.getAbsolutePath(), e);
+      return null;
+    }
+  }
 }
@@ -20,12 +20,15 @@
 package org.sonar.plugins.groovy.jacoco;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Maps;
-import org.apache.commons.lang.StringUtils;
+import com.google.common.collect.Lists;
 import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.ICounter;
 import org.jacoco.core.analysis.ILine;
 import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
@@ -35,10 +38,13 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.plugins.groovy.foundation.Groovy;
 import org.sonar.plugins.groovy.foundation.GroovyFileSystem;
+import org.sonar.plugins.groovy.foundation.ReportFiles;
 
 import javax.annotation.CheckForNull;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -49,12 +55,21 @@ public abstract class AbstractAnalyzer {
   private final File baseDir;
   private final PathResolver pathResolver;
   private final GroovyFileSystem groovyFileSystem;
-  private Map<String, File> classFilesCache;
+  private final int threads;
+  private final boolean coverageToZeroWhenNoReport;
+  private final ClassCoverageCache classCoverageCache;
+  private final ClassFileScanner classFileScanner;
+  private Map<String, ClassFile> classFiles;
 
-  public AbstractAnalyzer(Groovy groovy, FileSystem fileSystem, PathResolver pathResolver) {
+  public AbstractAnalyzer(Groovy groovy, JaCoCoConfiguration configuration, FileSystem fileSystem, PathResolver pathResolver,
+    ClassCoverageCache classCoverageCache, ClassFileScanner classFileScanner) {
+    threads = configuration.getThreads();
+    coverageToZeroWhenNoReport = configuration.isCoverageToZeroWhenNoReport();
     groovyFileSystem = new GroovyFileSystem(fileSystem);
     baseDir = fileSystem.baseDir();
     this.pathResolver = pathResolver;
+    this.classCoverageCache = classCoverageCache;
+    this.classFileScanner = classFileScanner;
     this.binaryDirs = getFiles(groovy.getBinaryDirectories(), baseDir);
   }
 
@@ -72,12 +87,11 @@ public abstract class AbstractAnalyzer {
 
   @CheckForNull
   private InputFile getInputFile(ISourceFileCoverage coverage) {
-    String path = getFileRelativePath(coverage);
-    InputFile sourceInputFileFromRelativePath = groovyFileSystem.sourceInputFileFromRelativePath(path);
-    if (sourceInputFileFromRelativePath == null) {
-      JaCoCoExtensions.logger().warn("File not found: " + path);
+    InputFile inputFile = groovyFileSystem.sourceInputFileFromPackage(coverage.getPackageName(), coverage.getName());
+    if (inputFile == null) {
+      JaCoCoExtensions.logger().warn("File not found: " + getFileRelativePath(coverage));
     }
-    return sourceInputFileFromRelativePath;
+    return inputFile;
   }
 
   private static String getFileRelativePath(ISourceFileCoverage coverage) {
@@ -89,36 +103,15 @@ public abstract class AbstractAnalyzer {
       JaCoCoExtensions.logger().warn("Project coverage is set to 0% since there is no directories with classes.");
       return;
     }
-    classFilesCache = Maps.newHashMap();
-    for (File classesDir : binaryDirs) {
-      populateClassFilesCache(classFilesCache, classesDir, "");
-    }
+    classFiles = classFileScanner.scan(binaryDirs);
 
-    String path = getReportPath(project);
-    if (path == null) {
-      JaCoCoExtensions.logger().warn("No jacoco coverage execution file found for project " + project.getName() + ".");
-      return;
+    ExecutionDataVisitor executionDataVisitor = new ExecutionDataVisitor();
+    JaCoCoReportReader jacocoReportReader = readExecutionData(project, executionDataVisitor);
+    if (jacocoReportReader != null) {
+      analyzeExecutionData(jacocoReportReader, executionDataVisitor.getMerged(), context);
     }
-    File jacocoExecutionData = pathResolver.relativeFile(baseDir, path);
-
-    readExecutionData(jacocoExecutionData, context);
-
-    classFilesCache.clear();
-  }
 
-  private static void populateClassFilesCache(Map<String, File> classFilesCache, File dir, String path) {
-    File[] files = dir.listFiles();
-    if (files == null) {
-      return;
-    }
-    for (File file : files) {
-      if (file.isDirectory()) {
-        populateClassFilesCache(classFilesCache, file, path + file.getName() + "/");
-      } else if (file.getName().endsWith(".class")) {
-        String className = path + StringUtils.removeEnd(file.getName(), ".class");
-        classFilesCache.put(className, file);
-      }
-    }
+    classFiles = null;
   }
 
   private boolean atLeastOneBinaryDirectoryExists(Project project) {
@@ -134,19 +127,27 @@ public abstract class AbstractAnalyzer {
     return false;
   }
 
-  public final void readExecutionData(File jacocoExecutionData, SensorContext context) {
-    ExecutionDataVisitor executionDataVisitor = new ExecutionDataVisitor();
-
-    File fileToAnalyze = jacocoExecutionData;
-    if (fileToAnalyze == null || !fileToAnalyze.isFile()) {
-      JaCoCoExtensions.logger().warn("Project coverage is set to 0% as no JaCoCo execution data has been dumped: {}", jacocoExecutionData);
-      fileToAnalyze = null;
-    } else {
-      JaCoCoExtensions.logger().info("Analysing {}", fileToAnalyze);
+  /**
+   * Reads the execution data of the reports returned by {@link #getReportPath(Project)} in the given visitor.
+   * @return the reader to analyze class files with, or null when there is nothing to analyze
+   */
+  @CheckForNull
+  private JaCoCoReportReader readExecutionData(Project project, ExecutionDataVisitor executionDataVisitor) {
+    String path = getReportPath(project);
+    if (path == null) {
+      JaCoCoExtensions.logger().warn("No jacoco coverage execution file found for project " + project.getName() + ".");
+      return null;
+    }
+    List<File> reports = ReportFiles.existing(ReportFiles.resolve(pathResolver, baseDir, path));
+    if (reports.isEmpty()) {
+      JaCoCoExtensions.logger().warn("Project coverage is set to 0% as no JaCoCo execution data has been dumped: {}", path);
     }
-    JaCoCoReportReader jacocoReportReader = new JaCoCoReportReader(fileToAnalyze).readJacocoReport(executionDataVisitor, executionDataVisitor);
+    return new JaCoCoReportReader(JaCoCoReportMerger.readReports(executionDataVisitor, threads, reports));
+  }
 
-    CoverageBuilder coverageBuilder = jacocoReportReader.analyzeFiles(executionDataVisitor.getMerged(), classFilesCache.values());
+  private void analyzeExecutionData(JaCoCoReportReader jacocoReportReader, ExecutionDataStore executionData, SensorContext context) {
+    Collection<ClassFile> classFilesToAnalyze = coverageToZeroWhenNoReport ? classFiles.values() : classFilesToAnalyze(executionData);
+    CoverageBuilder coverageBuilder = jacocoReportReader.analyzeFiles(executionData, classFilesToAnalyze, threads, classCoverageCache);
     int analyzedResources = 0;
     for (ISourceFileCoverage coverage : coverageBuilder.getSourceFiles()) {
       InputFile groovyFile = getInputFile(coverage);
@@ -161,6 +162,54 @@ public abstract class AbstractAnalyzer {
     }
   }
 
+  /**
+   * Classes without execution data are only worth analyzing when they are compiled from a main Groovy file of the project,
+   * to report its uncovered lines.
+   */
+  private Collection<ClassFile> classFilesToAnalyze(ExecutionDataStore executionData) {
+    List<ClassFile> classFilesToAnalyze = Lists.newArrayList();
+    try (ClassFile.Reader reader = new ClassFile.Reader()) {
+      for (Map.Entry<String, ClassFile> classFile : classFiles.entrySet()) {
+        String className = classFile.getKey();
+        if (executionData.contains(className) || hasSourceInputFile(className, reader, classFile.getValue())) {
+          classFilesToAnalyze.add(classFile.getValue());
+        }
+      }
+    }
+    JaCoCoExtensions.logger().debug("{} class files skipped, as they have neither execution data nor source file", classFiles.size() - classFilesToAnalyze.size());
+    return classFilesToAnalyze;
+  }
+
+  private boolean hasSourceInputFile(String className, ClassFile.Reader reader, ClassFile classFile) {
+    String sourceFileName;
+    try {
+      sourceFileName = sourceFileName(reader, classFile);
+    } catch (IOException | RuntimeException e) {
+      // let the analysis of the class report the problem
+      return true;
+    }
+    int lastSlash = className.lastIndexOf('/');
+    String packagePath = lastSlash < 0 ? "" : className.substring(0, lastSlash);
+    return sourceFileName != null && groovyFileSystem.sourceInputFileFromPackage(packagePath, sourceFileName) != null;
+  }
+
+  /**
+   * Reads the name of the source file of a class, without reading its code.
+   */
+  @CheckForNull
+  static String sourceFileName(ClassFile.Reader reader, ClassFile classFile) throws IOException {
+    final String[] sourceFileName = new String[1];
+    try (InputStream inputStream = reader.open(classFile)) {
+      new ClassReader(inputStream).accept(new ClassVisitor(Opcodes.ASM5) {
+        @Override
+        public void visitSource(String source, String debug) {
+          sourceFileName[0] = source;
+        }
+      }, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+    }
+    return sourceFileName[0];
+  }
+
   private static CoverageMeasuresBuilder analyzeFile(ISourceFileCoverage coverage) {
     CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
     for (int lineId = coverage.getFirstLine(); lineId <= coverage.getLastLine(); lineId++) {
@@ -200,5 +249,8 @@ public abstract class AbstractAnalyzer {
 
   protected abstract void saveMeasures(SensorContext context, InputFile inputFile, Collection<Measure> measures);
 
+  /**
+   * @return comma-separated paths of the reports to analyze, which may contain wildcards, see {@link ReportFiles}
+   */
   protected abstract String getReportPath(Project project);
 }
@@ -0,0 +1,240 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.jacoco;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.objectweb.asm.ClassReader;
+import org.sonar.api.BatchExtension;
+import org.sonar.plugins.groovy.foundation.AnalysisCache;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.Serializable;
+
+/**
+ * Coverage of the classes analyzed by the JaCoCo sensors, shared by the sensors of the analysis.
+ * The coverage of a class only depends on its bytecode, identified by its CRC64 as JaCoCo does, on its probes,
+ * and on the analyzer, which differs for execution data in the previous format of JaCoCo:
+ * a class without execution data, or with the same probes for unit tests, integration tests and overall,
+ * is only analyzed once.
+ * <p>
+ * Only the coverage of classes without execution data, which depends on their bytecode alone, is persisted in the
+ * working directory when the {@link AnalysisCache} is enabled. Coverage depending on probes changes with every test run,
+ * and is only kept in memory: applying probes to a persisted analysis would need the instruction graph of JaCoCo,
+ * which is not part of its API.
+ */
+public class ClassCoverageCache implements BatchExtension {
+
+  private static final String CACHE_KIND = "jacoco";
+  private static final String PREVIOUS_ANALYZER = "previous";
+  private static final long CRC64_POLYNOMIAL = 0xd800000000000000L;
+  private static final long[] CRC64_TABLE = new long[256];
+
+  static {
+    for (int i = 0; i < CRC64_TABLE.length; i++) {
+      long value = i;
+      for (int bit = 0; bit < 8; bit++) {
+        value = (value & 1) == 1 ? ((value >>> 1) ^ CRC64_POLYNOMIAL) : (value >>> 1);
+      }
+      CRC64_TABLE[i] = value;
+    }
+  }
+
+  private final AnalysisCache analysisCache;
+  private final Cache<String, IClassCoverage> classCoverages = CacheBuilder.newBuilder().softValues().build();
+
+  public ClassCoverageCache(AnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+  }
+
+  /**
+   * @return null when the class can not be read, in which case the analysis of the class reports the problem
+   */
+  @CheckForNull
+  static Key key(ExecutionDataStore executionData, byte[] classBytes, boolean currentAnalyzer) {
+    long classId = classId(classBytes);
+    ExecutionData data = executionData.get(classId);
+    String probes;
+    if (data == null) {
+      String className;
+      try {
+        className = new ClassReader(classBytes).getClassName();
+      } catch (RuntimeException e) {
+        return null;
+      }
+      // JaCoCo flags the class when there is execution data for another version of it
+      probes = executionData.contains(className) ? "mismatch" : "none";
+    } else {
+      probes = toString(data.getProbes());
+    }
+    return new Key(AnalysisCache.key(currentAnalyzer ? JaCoCo.VERSION : PREVIOUS_ANALYZER, Long.toHexString(classId), probes), data == null);
+  }
+
+  /**
+   * Identifier of a class in JaCoCo execution data: the CRC64 checksum of its bytecode.
+   */
+  static long classId(byte[] classBytes) {
+    long checksum = 0;
+    for (byte b : classBytes) {
+      checksum = (checksum >>> 8) ^ CRC64_TABLE[((int) checksum ^ b) & 0xff];
+    }
+    return checksum;
+  }
+
+  private static String toString(boolean[] probes) {
+    char[] chars = new char[probes.length];
+    for (int i = 0; i < probes.length; i++) {
+      chars[i] = probes[i] ? '1' : '0';
+    }
+    return new String(chars);
+  }
+
+  @CheckForNull
+  IClassCoverage get(Key key) {
+    IClassCoverage coverage = classCoverages.getIfPresent(key.value);
+    if (coverage == null && key.persistent) {
+      CachedClassCoverage cached = analysisCache.get(CACHE_KIND, key.value, CachedClassCoverage.class);
+      if (cached != null) {
+        coverage = cached.toClassCoverage();
+        classCoverages.put(key.value, coverage);
+      }
+    }
+    return coverage;
+  }
+
+  void put(Key key, IClassCoverage coverage) {
+    classCoverages.put(key.value, coverage);
+    if (key.persistent && analysisCache.isEnabled()) {
+      analysisCache.put(CACHE_KIND, key.value, new CachedClassCoverage(coverage));
+    }
+  }
+
+  long size() {
+    return classCoverages.size();
+  }
+
+  /**
+   * Key of the coverage of a class, persistent when the coverage does not depend on probes.
+   */
+  static final class Key {
+    private final String value;
+    private final boolean persistent;
+
+    Key(String value, boolean persistent) {
+      this.value = value;
+      this.persistent = persistent;
+    }
+
+    boolean isPersistent() {
+      return persistent;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && value.equals(((Key) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+      return value.hashCode();
+    }
+  }
+
+  /**
+   * Coverage of a class by line, which is all the sensors need from it.
+   */
+  static class CachedClassCoverage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int INSTRUCTIONS_MISSED = 0;
+    private static final int INSTRUCTIONS_COVERED = 1;
+    private static final int BRANCHES_MISSED = 2;
+    private static final int BRANCHES_COVERED = 3;
+    private static final int COUNTERS = 4;
+
+    private final String name;
+    private final long id;
+    private final boolean noMatch;
+    @Nullable
+    private final String sourceFileName;
+    private final int firstLine;
+    /**
+     * Counters of each line from the first one, followed by the counters of the instructions without line.
+     */
+    private final int[] counters;
+
+    CachedClassCoverage(IClassCoverage coverage) {
+      name = coverage.getName();
+      id = coverage.getId();
+      noMatch = coverage.isNoMatch();
+      sourceFileName = coverage.getSourceFileName();
+      firstLine = coverage.getFirstLine();
+      int lines = firstLine == ISourceNode.UNKNOWN_LINE ? 0 : coverage.getLastLine() - firstLine + 1;
+      counters = new int[(lines + 1) * COUNTERS];
+      int instructionsMissed = coverage.getInstructionCounter().getMissedCount();
+      int instructionsCovered = coverage.getInstructionCounter().getCoveredCount();
+      int branchesMissed = coverage.getBranchCounter().getMissedCount();
+      int branchesCovered = coverage.getBranchCounter().getCoveredCount();
+      for (int i = 0; i < lines; i++) {
+        ILine line = coverage.getLine(firstLine + i);
+        set(i, line.getInstructionCounter(), line.getBranchCounter());
+        instructionsMissed -= line.getInstructionCounter().getMissedCount();
+        instructionsCovered -= line.getInstructionCounter().getCoveredCount();
+        branchesMissed -= line.getBranchCounter().getMissedCount();
+        branchesCovered -= line.getBranchCounter().getCoveredCount();
+      }
+      set(lines, JaCoCoInternals.counter(instructionsMissed, instructionsCovered), JaCoCoInternals.counter(branchesMissed, branchesCovered));
+    }
+
+    private void set(int index, ICounter instructions, ICounter branches) {
+      int offset = index * COUNTERS;
+      counters[offset + INSTRUCTIONS_MISSED] = instructions.getMissedCount();
+      counters[offset + INSTRUCTIONS_COVERED] = instructions.getCoveredCount();
+      counters[offset + BRANCHES_MISSED] = branches.getMissedCount();
+      counters[offset + BRANCHES_COVERED] = branches.getCoveredCount();
+    }
+
+    /**
+     * Rebuilds the class with a single method holding all its lines: counters of methods and complexity are lost.
+     */
+    IClassCoverage toClassCoverage() {
+      int size = counters.length / COUNTERS;
+      ICounter[] instructions = new ICounter[size];
+      ICounter[] branches = new ICounter[size];
+      for (int i = 0; i < size; i++) {
+        int offset = i * COUNTERS;
+        instructions[i] = JaCoCoInternals.counter(counters[offset + INSTRUCTIONS_MISSED], counters[offset + INSTRUCTIONS_COVERED]);
+        branches[i] = JaCoCoInternals.counter(counters[offset + BRANCHES_MISSED], counters[offset + BRANCHES_COVERED]);
+      }
+      return JaCoCoInternals.classCoverage(name, id, noMatch, sourceFileName, firstLine, instructions, branches);
+    }
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.jacoco;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Class file to analyze: either a file of a binary directory, or an entry of a binary archive.
+ */
+public final class ClassFile {
+
+  /**
+   * The class file itself, or the archive containing it.
+   */
+  private final File file;
+  @Nullable
+  private final String entryName;
+
+  private ClassFile(File file, @Nullable String entryName) {
+    this.file = file;
+    this.entryName = entryName;
+  }
+
+  public static ClassFile of(File file) {
+    return new ClassFile(file, null);
+  }
+
+  public static ClassFile inArchive(File archive, String entryName) {
+    return new ClassFile(archive, entryName);
+  }
+
+  /**
+   * Location of the class file, for messages.
+   */
+  public String getPath() {
+    return entryName == null ? file.getAbsolutePath() : (file.getAbsolutePath() + "!/" + entryName);
+  }
+
+  /**
+   * @return the archive containing the class, or null for a file of a binary directory
+   */
+  @CheckForNull
+  public File getArchive() {
+    return entryName == null ? null : file;
+  }
+
+  public byte[] readBytes() throws IOException {
+    try (Reader reader = new Reader()) {
+      return reader.read(this);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getPath();
+  }
+
+  /**
+   * Reads class files, each archive being opened once until the reader is closed.
+   */
+  public static class Reader implements Closeable {
+
+    private final Map<File, ZipFile> archives = Maps.newHashMap();
+
+    public InputStream open(ClassFile classFile) throws IOException {
+      if (classFile.entryName == null) {
+        return new FileInputStream(classFile.file);
+      }
+      ZipFile zipFile = archives.get(classFile.file);
+      if (zipFile == null) {
+        zipFile = new ZipFile(classFile.file);
+        archives.put(classFile.file, zipFile);
+      }
+      ZipEntry entry = zipFile.getEntry(classFile.entryName);
+      if (entry == null) {
+        throw new FileNotFoundException(classFile.getPath());
+      }
+      return zipFile.getInputStream(entry);
+    }
+
+    public byte[] read(ClassFile classFile) throws IOException {
+      try (InputStream inputStream = open(classFile)) {
+        return ByteStreams.toByteArray(inputStream);
+      }
+    }
+
+    @Override
+    public void close() {
+      for (ZipFile zipFile : archives.values()) {
+        IOUtils.closeQuietly(zipFile);
+      }
+      archives.clear();
+    }
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.jacoco;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.BatchExtension;
+import org.sonar.plugins.groovy.foundation.ParallelTasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds the class files of the binary directories and archives of the project. Binaries are scanned concurrently,
+ * and only once per analysis as the result is shared by the JaCoCo sensors.
+ */
+public class ClassFileScanner implements BatchExtension {
+
+  private static final String CLASS_EXTENSION = ".class";
+
+  private final int threads;
+  private final Map<List<File>, Map<String, ClassFile>> classFilesByBinaries = Maps.newHashMap();
+
+  public ClassFileScanner(JaCoCoConfiguration configuration) {
+    this.threads = configuration.getThreads();
+  }
+
+  /**
+   * @return class files by internal class name, a class of a binary hiding the same class in the previous ones
+   */
+  public synchronized Map<String, ClassFile> scan(List<File> binaries) {
+    List<File> key = ImmutableList.copyOf(binaries);
+    Map<String, ClassFile> classFiles = classFilesByBinaries.get(key);
+    if (classFiles == null) {
+      classFiles = Collections.unmodifiableMap(scanBinaries(key));
+      classFilesByBinaries.put(key, classFiles);
+    }
+    return classFiles;
+  }
+
+  private Map<String, ClassFile> scanBinaries(List<File> binaries) {
+    List<Callable<Map<String, ClassFile>>> tasks = Lists.newArrayList();
+    for (final File binary : binaries) {
+      tasks.add(new Callable<Map<String, ClassFile>>() {
+        @Override
+        public Map<String, ClassFile> call() {
+          return scanBinary(binary);
+        }
+      });
+    }
+    Map<String, ClassFile> classFiles = Maps.newHashMap();
+    for (Map<String, ClassFile> binaryClassFiles : ParallelTasks.run(Math.min(threads, binaries.size()), tasks)) {
+      classFiles.putAll(binaryClassFiles);
+    }
+    return classFiles;
+  }
+
+  static Map<String, ClassFile> scanBinary(File binary) {
+    try {
+      if (binary.isDirectory()) {
+        return scanDirectory(binary.toPath());
+      } else if (isArchive(binary)) {
+        return scanArchive(binary);
+      }
+    } catch (IOException e) {
+      JaCoCoExtensions.logger().warn("Unable to scan binaries " + binary.getAbsolutePath(), e);
+    }
+    return Collections.emptyMap();
+  }
+
+  static boolean isArchive(File file) {
+    String extension = FilenameUtils.getExtension(file.getName());
+    return file.isFile() && ("jar".equalsIgnoreCase(extension) || "zip".equalsIgnoreCase(extension));
+  }
+
+  private static Map<String, ClassFile> scanDirectory(final Path directory) throws IOException {
+    final Map<String, ClassFile> classFiles = Maps.newHashMap();
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+        if (attributes.isRegularFile() && file.getFileName().toString().endsWith(CLASS_EXTENSION)) {
+          String relativePath = FilenameUtils.separatorsToUnix(directory.relativize(file).toString());
+          classFiles.put(StringUtils.removeEnd(relativePath, CLASS_EXTENSION), ClassFile.of(file.toFile()));
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException e) {
+        JaCoCoExtensions.logger().debug("Unable to read " + file, e);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return classFiles;
+  }
+
+  private static Map<String, ClassFile> scanArchive(File archive) throws IOException {
+    Map<String, ClassFile> classFiles = Maps.newHashMap();
+    try (ZipFile zipFile = new ZipFile(archive)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        String name = entry.getName();
+        if (!entry.isDirectory() && name.endsWith(CLASS_EXTENSION)) {
+          classFiles.put(StringUtils.removeEnd(name, CLASS_EXTENSION), ClassFile.inArchive(archive, name));
+        }
+      }
+    }
+    return classFiles;
+  }
+
+}
@@ -28,15 +28,38 @@ import org.jacoco.core.data.SessionInfo;
 
 import java.util.Map;
 
+/**
+ * Merges the execution data of all sessions. Execution data of each session is only kept on demand,
+ * as it requires a copy of all probes.
+ */
 public class ExecutionDataVisitor implements ISessionInfoVisitor, IExecutionDataVisitor {
 
+  private final boolean trackSessions;
   private final Map<String, ExecutionDataStore> sessions = Maps.newHashMap();
 
   private ExecutionDataStore executionDataStore;
   private ExecutionDataStore merged = new ExecutionDataStore();
 
+  public ExecutionDataVisitor() {
+    this(false);
+  }
+
+  /**
+   * @param trackSessions whether execution data of each session is kept, see {@link #getSessions()}
+   */
+  public ExecutionDataVisitor(boolean trackSessions) {
+    this.trackSessions = trackSessions;
+  }
+
+  public boolean isTrackingSessions() {
+    return trackSessions;
+  }
+
   @Override
   public void visitSessionInfo(SessionInfo info) {
+    if (!trackSessions) {
+      return;
+    }
     String sessionId = info.getId();
     executionDataStore = sessions.get(sessionId);
     if (executionDataStore == null) {
@@ -47,10 +70,18 @@ public class ExecutionDataVisitor implements ISessionInfoVisitor, IExecutionData
 
   @Override
   public void visitClassExecution(ExecutionData data) {
-    executionDataStore.put(data);
-    merged.put(defensiveCopy(data));
+    if (trackSessions) {
+      executionDataStore.put(data);
+      merged.put(defensiveCopy(data));
+    } else {
+      // probes of the first execution data of a class are merged in place with the following ones
+      merged.put(data);
+    }
   }
 
+  /**
+   * @return execution data by session id, empty unless sessions are tracked
+   */
   public Map<String, ExecutionDataStore> getSessions() {
     return sessions;
   }
@@ -27,6 +27,7 @@ import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.plugins.groovy.foundation.Groovy;
+import org.sonar.plugins.groovy.foundation.ParallelTasks;
 
 import java.util.List;
 
@@ -38,6 +39,8 @@ public class JaCoCoConfiguration implements BatchExtension {
   public static final String IT_REPORT_PATH_DEFAULT_VALUE = "target/jacoco-it.exec";
   public static final String REPORT_MISSING_FORCE_ZERO = "sonar.groovy.jacoco.reportMissing.force.zero";
   public static final boolean REPORT_MISSING_FORCE_ZERO_DEFAULT_VALUE = false;
+  public static final String THREADS_PROPERTY = "sonar.groovy.jacoco.threads";
+  public static final String WRITE_OVERALL_REPORT_PROPERTY = "sonar.groovy.jacoco.writeOverallReport";
 
   private final Settings settings;
   private final FileSystem fileSystem;
@@ -63,23 +66,33 @@ public class JaCoCoConfiguration implements BatchExtension {
     return settings.getString(IT_REPORT_PATH_PROPERTY);
   }
 
-  private boolean isCoverageToZeroWhenNoReport() {
+  public int getThreads() {
+    return ParallelTasks.threadCount(settings.getInt(THREADS_PROPERTY));
+  }
+
+  public boolean isCoverageToZeroWhenNoReport() {
     return settings.getBoolean(REPORT_MISSING_FORCE_ZERO);
   }
 
+  public boolean shouldWriteOverallReport() {
+    return settings.getBoolean(WRITE_OVERALL_REPORT_PROPERTY);
+  }
+
   public static List<PropertyDefinition> getPropertyDefinitions() {
     return ImmutableList
       .of(
         PropertyDefinition.builder(JaCoCoConfiguration.REPORT_PATH_PROPERTY)
           .defaultValue(JaCoCoConfiguration.REPORT_PATH_DEFAULT_VALUE)
           .name("UT JaCoCo Report")
-          .description("Path to the JaCoCo report file containing coverage data by unit tests. The path may be absolute or relative to the project base directory.")
+          .description("Path to the JaCoCo report file containing coverage data by unit tests. The path may be absolute or relative to the project base directory. "
+            + "Several comma-separated paths, and wildcards such as target/**/jacoco-*.exec, may be used to merge several reports.")
           .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
           .build(),
         PropertyDefinition.builder(JaCoCoConfiguration.IT_REPORT_PATH_PROPERTY)
           .defaultValue(JaCoCoConfiguration.IT_REPORT_PATH_DEFAULT_VALUE)
           .name("IT JaCoCo Report")
-          .description("Path to the JaCoCo report file containing coverage data by integration tests. The path may be absolute or relative to the project base directory.")
+          .description("Path to the JaCoCo report file containing coverage data by integration tests. The path may be absolute or relative to the project base directory. "
+            + "Several comma-separated paths, and wildcards such as target/**/jacoco-it-*.exec, may be used to merge several reports.")
           .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
           .build(),
         PropertyDefinition.builder(JaCoCoConfiguration.REPORT_MISSING_FORCE_ZERO)
@@ -88,6 +101,20 @@ public class JaCoCoConfiguration implements BatchExtension {
           .description("Force coverage to 0% if no JaCoCo reports are found during analysis.")
           .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
           .type(PropertyType.BOOLEAN)
+          .build(),
+        PropertyDefinition.builder(JaCoCoConfiguration.THREADS_PROPERTY)
+          .name("JaCoCo threads")
+          .description("Number of threads analyzing class files against JaCoCo execution data. Leave empty to use one thread per available core.")
+          .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+          .type(PropertyType.INTEGER)
+          .build(),
+        PropertyDefinition.builder(JaCoCoConfiguration.WRITE_OVERALL_REPORT_PROPERTY)
+          .defaultValue("false")
+          .name("Write overall JaCoCo report")
+          .description("Write the merge of the UT and IT JaCoCo reports to " + JaCoCoOverallSensor.JACOCO_OVERALL
+            + " in the working directory, for debugging purposes. Reports are merged in memory for the analysis.")
+          .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+          .type(PropertyType.BOOLEAN)
           .build()
       );
   }
@@ -38,6 +38,8 @@ public class JaCoCoExtensions {
     extensions.addAll(JaCoCoConfiguration.getPropertyDefinitions());
     extensions.add(
       JaCoCoConfiguration.class,
+      ClassCoverageCache.class,
+      ClassFileScanner.class,
       // Unit tests
       JaCoCoSensor.class,
       // Integration tests
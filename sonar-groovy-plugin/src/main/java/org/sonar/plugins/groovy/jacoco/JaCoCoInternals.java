@@ -0,0 +1,63 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.jacoco;
+
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+
+import javax.annotation.Nullable;
+
+/**
+ * Only access to the internal classes of JaCoCo, which are not part of its API and may change with any version:
+ * JaCoCoInternalsTest pins the version of JaCoCo this was written for.
+ */
+final class JaCoCoInternals {
+
+  private JaCoCoInternals() {
+  }
+
+  static ICounter counter(int missed, int covered) {
+    return CounterImpl.getInstance(missed, covered);
+  }
+
+  /**
+   * Builds the coverage of a class with a single method holding all its lines: counters of methods and complexity are lost.
+   * @param instructions counters of instructions of each line from the first one, followed by the ones of the instructions without line
+   * @param branches counters of branches, indexed as the instructions
+   */
+  static IClassCoverage classCoverage(String name, long id, boolean noMatch, @Nullable String sourceFileName, int firstLine,
+    ICounter[] instructions, ICounter[] branches) {
+    ClassCoverageImpl coverage = new ClassCoverageImpl(name, id, noMatch);
+    coverage.setSourceFileName(sourceFileName);
+    MethodCoverageImpl method = new MethodCoverageImpl("<cached>", "()V", null);
+    int lines = instructions.length - 1;
+    for (int i = 0; i <= lines; i++) {
+      method.increment(instructions[i], branches[i], i == lines ? ISourceNode.UNKNOWN_LINE : firstLine + i);
+    }
+    method.incrementMethodCounter();
+    coverage.addMethod(method);
+    return coverage;
+  }
+
+}
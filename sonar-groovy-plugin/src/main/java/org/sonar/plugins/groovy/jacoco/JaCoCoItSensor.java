@@ -28,27 +28,34 @@ import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Project;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.plugins.groovy.foundation.Groovy;
+import org.sonar.plugins.groovy.foundation.ReportFiles;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
 
 public class JaCoCoItSensor implements Sensor {
   private final JaCoCoConfiguration configuration;
   private final FileSystem fileSystem;
   private final PathResolver pathResolver;
   private final Groovy groovy;
+  private final ClassCoverageCache classCoverageCache;
+  private final ClassFileScanner classFileScanner;
 
-  public JaCoCoItSensor(Groovy groovy, JaCoCoConfiguration configuration, FileSystem fileSystem, PathResolver pathResolver) {
+  public JaCoCoItSensor(Groovy groovy, JaCoCoConfiguration configuration, FileSystem fileSystem, PathResolver pathResolver,
+    ClassCoverageCache classCoverageCache, ClassFileScanner classFileScanner) {
     this.configuration = configuration;
     this.groovy = groovy;
     this.fileSystem = fileSystem;
     this.pathResolver = pathResolver;
+    this.classCoverageCache = classCoverageCache;
+    this.classFileScanner = classFileScanner;
   }
 
   @Override
   public boolean shouldExecuteOnProject(Project project) {
-    File report = pathResolver.relativeFile(fileSystem.baseDir(), configuration.getItReportPath());
-    boolean foundReport = report.exists() && report.isFile();
+    List<File> reports = ReportFiles.resolve(pathResolver, fileSystem.baseDir(), configuration.getItReportPath());
+    boolean foundReport = !ReportFiles.existing(reports).isEmpty();
     boolean shouldExecute = configuration.shouldExecuteOnProject(foundReport);
     if (!foundReport && shouldExecute) {
       JaCoCoExtensions.logger().info("JaCoCoItSensor: JaCoCo IT report not found.");
@@ -63,7 +70,7 @@ public class JaCoCoItSensor implements Sensor {
 
   class ITAnalyzer extends AbstractAnalyzer {
     public ITAnalyzer() {
-      super(groovy, fileSystem, pathResolver);
+      super(groovy, configuration, fileSystem, pathResolver, classCoverageCache, classFileScanner);
     }
 
     @Override
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.groovy.jacoco;
 
+import com.google.common.base.Joiner;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FileSystem;
@@ -28,9 +29,11 @@ import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Project;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.plugins.groovy.foundation.Groovy;
+import org.sonar.plugins.groovy.foundation.ReportFiles;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
 
 public class JaCoCoOverallSensor implements Sensor {
 
@@ -40,20 +43,22 @@ public class JaCoCoOverallSensor implements Sensor {
   private final FileSystem fileSystem;
   private final PathResolver pathResolver;
   private final Groovy groovy;
+  private final ClassCoverageCache classCoverageCache;
+  private final ClassFileScanner classFileScanner;
 
-  public JaCoCoOverallSensor(Groovy groovy, JaCoCoConfiguration configuration, FileSystem fileSystem, PathResolver pathResolver) {
+  public JaCoCoOverallSensor(Groovy groovy, JaCoCoConfiguration configuration, FileSystem fileSystem, PathResolver pathResolver,
+    ClassCoverageCache classCoverageCache, ClassFileScanner classFileScanner) {
     this.configuration = configuration;
     this.groovy = groovy;
     this.pathResolver = pathResolver;
     this.fileSystem = fileSystem;
+    this.classCoverageCache = classCoverageCache;
+    this.classFileScanner = classFileScanner;
   }
 
   @Override
   public boolean shouldExecuteOnProject(Project project) {
-    File baseDir = fileSystem.baseDir();
-    File reportUTs = pathResolver.relativeFile(baseDir, configuration.getReportPath());
-    File reportITs = pathResolver.relativeFile(baseDir, configuration.getItReportPath());
-    boolean foundOneReport = reportUTs.exists() || reportITs.exists();
+    boolean foundOneReport = !ReportFiles.existing(reports()).isEmpty();
     boolean shouldExecute = configuration.shouldExecuteOnProject(foundOneReport);
     if (!foundOneReport && shouldExecute) {
       JaCoCoExtensions.logger().info("JaCoCoOverallSensor: JaCoCo reports not found.");
@@ -61,31 +66,37 @@ public class JaCoCoOverallSensor implements Sensor {
     return shouldExecute;
   }
 
-  @Override
-  public void analyse(Project project, SensorContext context) {
-    File baseDir = fileSystem.baseDir();
-    File reportUTs = pathResolver.relativeFile(baseDir, configuration.getReportPath());
-    File reportITs = pathResolver.relativeFile(baseDir, configuration.getItReportPath());
+  private List<File> reports() {
+    return ReportFiles.resolve(pathResolver, fileSystem.baseDir(), reportPaths());
+  }
 
-    File reportOverall = new File(fileSystem.workDir(), JACOCO_OVERALL);
-    reportOverall.getParentFile().mkdirs();
+  private String reportPaths() {
+    return Joiner.on(',').skipNulls().join(configuration.getReportPath(), configuration.getItReportPath());
+  }
 
-    JaCoCoReportMerger.mergeReports(reportOverall, reportUTs, reportITs);
+  @Override
+  public void analyse(Project project, SensorContext context) {
+    if (configuration.shouldWriteOverallReport()) {
+      File reportOverall = new File(fileSystem.workDir(), JACOCO_OVERALL);
+      reportOverall.getParentFile().mkdirs();
+      List<File> reports = reports();
+      JaCoCoReportMerger.mergeReports(reportOverall, reports.toArray(new File[reports.size()]));
+    }
 
-    new OverallAnalyzer(reportOverall).analyse(project, context);
+    new OverallAnalyzer().analyse(project, context);
   }
 
   class OverallAnalyzer extends AbstractAnalyzer {
-    private final File report;
-
-    OverallAnalyzer(File report) {
-      super(groovy, fileSystem, pathResolver);
-      this.report = report;
+    OverallAnalyzer() {
+      super(groovy, configuration, fileSystem, pathResolver, classCoverageCache, classFileScanner);
     }
 
+    /**
+     * Reports of unit and integration tests are merged in memory.
+     */
     @Override
     protected String getReportPath(Project project) {
-      return report.getAbsolutePath();
+      return reportPaths();
     }
 
     @Override
@@ -19,17 +19,23 @@
  */
 package org.sonar.plugins.groovy.jacoco;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.lang.BooleanUtils;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ExecutionDataWriter;
 import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
 import org.jacoco.core.data.SessionInfoStore;
+import org.sonar.plugins.groovy.foundation.ParallelTasks;
+import org.sonar.plugins.groovy.foundation.ReportFiles;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Utility class to merge JaCoCo reports.
@@ -49,7 +55,7 @@ public class JaCoCoReportMerger {
   public static void mergeReports(File reportOverall, File... reports) {
     SessionInfoStore infoStore = new SessionInfoStore();
     ExecutionDataStore dataStore = new ExecutionDataStore();
-    boolean isCurrentVersionFormat = loadSourceFiles(infoStore, dataStore, reports);
+    boolean isCurrentVersionFormat = readReports(infoStore, dataStore, reports);
 
     try (BufferedOutputStream outputStream = new BufferedOutputStream(new FileOutputStream(reportOverall))) {
       Object visitor;
@@ -65,7 +71,12 @@ public class JaCoCoReportMerger {
     }
   }
 
-  private static boolean loadSourceFiles(ISessionInfoVisitor infoStore, IExecutionDataVisitor dataStore, File... reports) {
+  /**
+   * Read all existing reports in the same visitors, which merges their execution data.
+   * @return true if reports use the latest binary format.
+   * @throws IllegalStateException if reports do not use the same binary format.
+   */
+  public static boolean readReports(ISessionInfoVisitor infoStore, IExecutionDataVisitor dataStore, File... reports) {
     Boolean isCurrentVersionFormat = null;
     for (File report : reports) {
       if (report.isFile()) {
@@ -81,4 +92,41 @@ public class JaCoCoReportMerger {
     return BooleanUtils.isNotFalse(isCurrentVersionFormat);
   }
 
+  /**
+   * Read all existing reports in the merged execution data of the visitor. Reports are read in parallel, the execution
+   * data of each one being merged as soon as it is read. As the format of a report is only known once it is read,
+   * reports of different binary formats are detected once all of them are read.
+   * @return true if reports use the latest binary format.
+   * @throws IllegalStateException if reports do not use the same binary format.
+   */
+  public static boolean readReports(final ExecutionDataVisitor visitor, int threads, Collection<File> reports) {
+    List<File> existingReports = ReportFiles.existing(Lists.newArrayList(reports));
+    if (threads <= 1 || existingReports.size() <= 1 || visitor.isTrackingSessions()) {
+      return readReports(visitor, visitor, existingReports.toArray(new File[existingReports.size()]));
+    }
+    List<Callable<Boolean>> tasks = Lists.newArrayList();
+    for (final File report : existingReports) {
+      tasks.add(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          ExecutionDataVisitor reportVisitor = new ExecutionDataVisitor();
+          boolean reportFormatIsCurrent = new JaCoCoReportReader(report).readJacocoReport(reportVisitor, reportVisitor).useCurrentBinaryFormat();
+          synchronized (visitor) {
+            reportVisitor.getMerged().accept(visitor);
+          }
+          return reportFormatIsCurrent;
+        }
+      });
+    }
+    Boolean isCurrentVersionFormat = null;
+    for (Boolean reportFormatIsCurrent : ParallelTasks.run(threads, tasks)) {
+      if (isCurrentVersionFormat == null) {
+        isCurrentVersionFormat = reportFormatIsCurrent;
+      } else if (!isCurrentVersionFormat.equals(reportFormatIsCurrent)) {
+        throw new IllegalStateException("You are trying to merge two different JaCoCo binary formats. Please use only one version of JaCoCo.");
+      }
+    }
+    return BooleanUtils.isNotFalse(isCurrentVersionFormat);
+  }
+
 }
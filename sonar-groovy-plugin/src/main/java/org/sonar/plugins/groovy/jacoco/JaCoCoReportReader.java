@@ -19,42 +19,77 @@
  */
 package org.sonar.plugins.groovy.jacoco;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
 import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICoverageVisitor;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ExecutionDataWriter;
 import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
+import org.sonar.plugins.groovy.foundation.ParallelTasks;
 
 import javax.annotation.Nullable;
 
-import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 public class JaCoCoReportReader {
 
+  /**
+   * Class files are split in more shards than threads, as the time needed to analyze a class varies a lot.
+   */
+  private static final int SHARDS_PER_THREAD = 4;
+
+  /**
+   * Class files of a same archive are kept together, so that each shard opens as few archives as possible.
+   */
+  private static final Ordering<ClassFile> BY_ARCHIVE = Ordering.natural().nullsFirst().onResultOf(new Function<ClassFile, File>() {
+    @Override
+    public File apply(ClassFile classFile) {
+      return classFile.getArchive();
+    }
+  });
+
   @Nullable
   private final File jacocoExecutionData;
-  private final boolean useCurrentBinaryFormat;
+  private boolean useCurrentBinaryFormat;
 
+  /**
+   * The report is neither opened nor mapped until it is read, its format being determined at that time.
+   */
   public JaCoCoReportReader(@Nullable File jacocoExecutionData) {
     this.jacocoExecutionData = jacocoExecutionData;
-    this.useCurrentBinaryFormat = isCurrentReportFormat(jacocoExecutionData);
+    this.useCurrentBinaryFormat = true;
+  }
+
+  /**
+   * Reader of no report, analyzing class files against execution data read with the given binary format.
+   */
+  public JaCoCoReportReader(boolean useCurrentBinaryFormat) {
+    this.jacocoExecutionData = null;
+    this.useCurrentBinaryFormat = useCurrentBinaryFormat;
   }
 
   /**
    * Read JaCoCo report determining the format to be used.
+   * The report is mapped once: its header is read from the mapping to determine the format, then the same mapping is
+   * read by the execution data reader, and is released as soon as the report is read.
    * @param executionDataVisitor visitor to store execution data.
    * @param sessionInfoStore visitor to store info session.
-   * @return true if binary format is the latest one.
-   * @throws IOException in case of error or binary format not supported.
+   * @return this reader, whose {@link #useCurrentBinaryFormat()} is the format of the report.
+   * @throws IllegalArgumentException in case of error or binary format not supported.
    */
   public JaCoCoReportReader readJacocoReport(IExecutionDataVisitor executionDataVisitor, ISessionInfoVisitor sessionInfoStore) {
     if (jacocoExecutionData == null) {
@@ -62,7 +97,15 @@ public class JaCoCoReportReader {
     }
 
     JaCoCoExtensions.logger().info("Analysing {}", jacocoExecutionData);
-    try (InputStream inputStream = new BufferedInputStream(new FileInputStream(jacocoExecutionData))) {
+    List<ByteBuffer> mappedExecutionData;
+    try {
+      mappedExecutionData = MappedFileInputStream.map(jacocoExecutionData);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(String.format("Unable to read %s", jacocoExecutionData.getAbsolutePath()), e);
+    }
+    try {
+      useCurrentBinaryFormat = isCurrentReportFormat(jacocoExecutionData, mappedExecutionData);
+      InputStream inputStream = new MappedFileInputStream(mappedExecutionData);
       if (useCurrentBinaryFormat) {
         ExecutionDataReader reader = new ExecutionDataReader(inputStream);
         reader.setSessionInfoVisitor(sessionInfoStore);
@@ -76,15 +119,15 @@ public class JaCoCoReportReader {
       }
     } catch (IOException e) {
       throw new IllegalArgumentException(String.format("Unable to read %s", jacocoExecutionData.getAbsolutePath()), e);
+    } finally {
+      MappedFileInputStream.unmap(mappedExecutionData);
     }
     return this;
   }
 
-  private static boolean isCurrentReportFormat(@Nullable File jacocoExecutionData) {
-    if (jacocoExecutionData == null) {
-      return true;
-    }
-    try (DataInputStream dis = new DataInputStream(new FileInputStream(jacocoExecutionData))) {
+  private static boolean isCurrentReportFormat(File jacocoExecutionData, List<ByteBuffer> mappedExecutionData) {
+    // the header is read through its own stream, leaving the mapping to be read from its start
+    try (DataInputStream dis = new DataInputStream(new MappedFileInputStream(mappedExecutionData))) {
       byte firstByte = dis.readByte();
       Preconditions.checkState(firstByte == ExecutionDataWriter.BLOCK_HEADER);
       Preconditions.checkState(dis.readChar() == ExecutionDataWriter.MAGIC_NUMBER);
@@ -99,6 +142,9 @@ public class JaCoCoReportReader {
     }
   }
 
+  /**
+   * Format of the execution data: the format of the report once read, or the format given to a reader of no report.
+   */
   public boolean useCurrentBinaryFormat() {
     return this.useCurrentBinaryFormat;
   }
@@ -106,40 +152,77 @@ public class JaCoCoReportReader {
   /**
    * Caller must guarantee that {@code classFiles} are actually class file.
    */
-  public CoverageBuilder analyzeFiles(ExecutionDataStore executionDataStore, Collection<File> classFiles) {
+  public CoverageBuilder analyzeFiles(ExecutionDataStore executionDataStore, Collection<ClassFile> classFiles) {
+    return analyzeFiles(executionDataStore, classFiles, 1, null);
+  }
+
+  /**
+   * Analyzes class files with several threads: class files are split in shards, each one analyzed by its own analyzer
+   * into its own coverage builder, and the coverage of the classes is then merged by source file into a single builder.
+   * Caller must guarantee that {@code classFiles} are actually class file.
+   * @param cache coverage of the classes already analyzed with the same execution data, if any
+   */
+  public CoverageBuilder analyzeFiles(final ExecutionDataStore executionDataStore, Collection<ClassFile> classFiles, int threads,
+    @Nullable final ClassCoverageCache cache) {
+    if (threads <= 1 || classFiles.size() <= 1) {
+      return analyzeShard(executionDataStore, classFiles, cache);
+    }
+    int shardSize = Math.max(1, classFiles.size() / (threads * SHARDS_PER_THREAD));
+    List<Callable<CoverageBuilder>> tasks = Lists.newArrayList();
+    for (final List<ClassFile> shard : Lists.partition(BY_ARCHIVE.sortedCopy(classFiles), shardSize)) {
+      tasks.add(new Callable<CoverageBuilder>() {
+        @Override
+        public CoverageBuilder call() {
+          return analyzeShard(executionDataStore, shard, cache);
+        }
+      });
+    }
     CoverageBuilder coverageBuilder = new CoverageBuilder();
-    if (useCurrentBinaryFormat) {
-      Analyzer analyzer = new Analyzer(executionDataStore, coverageBuilder);
-      for (File classFile : classFiles) {
-        analyzeClassFile(analyzer, classFile);
-      }
-    } else {
-      org.jacoco.previous.core.analysis.Analyzer analyzer = new org.jacoco.previous.core.analysis.Analyzer(executionDataStore, coverageBuilder);
-      for (File classFile : classFiles) {
-        analyzeClassFile(analyzer, classFile);
+    for (CoverageBuilder shardCoverage : ParallelTasks.run(threads, tasks)) {
+      for (IClassCoverage classCoverage : shardCoverage.getClasses()) {
+        coverageBuilder.visitCoverage(classCoverage);
       }
     }
     return coverageBuilder;
   }
 
-  /**
-   * Caller must guarantee that {@code classFile} is actually class file.
-   */
-  private static void analyzeClassFile(org.jacoco.previous.core.analysis.Analyzer analyzer, File classFile) {
-    try (InputStream inputStream = new FileInputStream(classFile)) {
-      analyzer.analyzeClass(inputStream, classFile.getPath());
-    } catch (IOException e) {
-      // (Godin): in fact JaCoCo includes name into exception
-      JaCoCoExtensions.logger().warn("Exception during analysis of file " + classFile.getAbsolutePath(), e);
+  private CoverageBuilder analyzeShard(ExecutionDataStore executionDataStore, Collection<ClassFile> classFiles, @Nullable ClassCoverageCache cache) {
+    CoverageBuilder coverageBuilder = new CoverageBuilder();
+    try (ClassFile.Reader reader = new ClassFile.Reader()) {
+      for (ClassFile classFile : classFiles) {
+        try {
+          analyzeClass(executionDataStore, reader.read(classFile), classFile.getPath(), coverageBuilder, cache);
+        } catch (IOException e) {
+          // (Godin): in fact JaCoCo includes name into exception
+          JaCoCoExtensions.logger().warn("Exception during analysis of file " + classFile.getPath(), e);
+        }
+      }
     }
+    return coverageBuilder;
   }
 
-  private static void analyzeClassFile(Analyzer analyzer, File classFile) {
-    try (InputStream inputStream = new FileInputStream(classFile)) {
-      analyzer.analyzeClass(inputStream, classFile.getPath());
-    } catch (IOException e) {
-      // (Godin): in fact JaCoCo includes name into exception
-      JaCoCoExtensions.logger().warn("Exception during analysis of file " + classFile.getAbsolutePath(), e);
+  private void analyzeClass(ExecutionDataStore executionDataStore, byte[] classBytes, String location, final ICoverageVisitor coverageVisitor,
+    @Nullable final ClassCoverageCache cache) throws IOException {
+    final ClassCoverageCache.Key key = cache == null ? null : ClassCoverageCache.key(executionDataStore, classBytes, useCurrentBinaryFormat);
+    IClassCoverage cachedCoverage = key == null ? null : cache.get(key);
+    if (cachedCoverage != null) {
+      coverageVisitor.visitCoverage(cachedCoverage);
+      return;
+    }
+    ICoverageVisitor visitor = coverageVisitor;
+    if (key != null) {
+      visitor = new ICoverageVisitor() {
+        @Override
+        public void visitCoverage(IClassCoverage coverage) {
+          cache.put(key, coverage);
+          coverageVisitor.visitCoverage(coverage);
+        }
+      };
+    }
+    if (useCurrentBinaryFormat) {
+      new Analyzer(executionDataStore, visitor).analyzeClass(classBytes, location);
+    } else {
+      new org.jacoco.previous.core.analysis.Analyzer(executionDataStore, visitor).analyzeClass(classBytes, location);
     }
   }
 
@@ -29,9 +29,11 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.resources.Project;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.plugins.groovy.foundation.Groovy;
+import org.sonar.plugins.groovy.foundation.ReportFiles;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
 
 public class JaCoCoSensor implements Sensor {
 
@@ -39,12 +41,17 @@ public class JaCoCoSensor implements Sensor {
   private final FileSystem fileSystem;
   private final PathResolver pathResolver;
   private final Groovy groovy;
+  private final ClassCoverageCache classCoverageCache;
+  private final ClassFileScanner classFileScanner;
 
-  public JaCoCoSensor(Groovy groovy, JaCoCoConfiguration configuration, FileSystem fileSystem, PathResolver pathResolver) {
+  public JaCoCoSensor(Groovy groovy, JaCoCoConfiguration configuration, FileSystem fileSystem, PathResolver pathResolver,
+    ClassCoverageCache classCoverageCache, ClassFileScanner classFileScanner) {
     this.configuration = configuration;
     this.groovy = groovy;
     this.fileSystem = fileSystem;
     this.pathResolver = pathResolver;
+    this.classCoverageCache = classCoverageCache;
+    this.classFileScanner = classFileScanner;
   }
 
   @DependsUpon
@@ -59,8 +66,8 @@ public class JaCoCoSensor implements Sensor {
 
   @Override
   public boolean shouldExecuteOnProject(Project project) {
-    File report = pathResolver.relativeFile(fileSystem.baseDir(), configuration.getReportPath());
-    boolean foundReport = report.exists() && report.isFile();
+    List<File> reports = ReportFiles.resolve(pathResolver, fileSystem.baseDir(), configuration.getReportPath());
+    boolean foundReport = !ReportFiles.existing(reports).isEmpty();
     boolean shouldExecute = configuration.shouldExecuteOnProject(foundReport);
     if (!foundReport && shouldExecute) {
       JaCoCoExtensions.logger().info("JaCoCoSensor: JaCoCo report not found.");
@@ -70,7 +77,7 @@ public class JaCoCoSensor implements Sensor {
 
   class UnitTestsAnalyzer extends AbstractAnalyzer {
     public UnitTestsAnalyzer() {
-      super(groovy, fileSystem, pathResolver);
+      super(groovy, configuration, fileSystem, pathResolver, classCoverageCache, classFileScanner);
     }
 
     @Override
@@ -0,0 +1,147 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.jacoco;
+
+import com.google.common.collect.Lists;
+
+import javax.annotation.CheckForNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Input stream over a file mapped in memory, which avoids a system call and a copy for each buffer read.
+ * As a single mapping is limited to 2 GB, the file is mapped by consecutive regions.
+ * Several streams may read the same regions, which are released with {@link #unmap(List)} once no stream reads them anymore.
+ */
+class MappedFileInputStream extends InputStream {
+
+  private static final long MAX_REGION_SIZE = Integer.MAX_VALUE;
+
+  private final List<ByteBuffer> regions;
+  private int nextRegion = 0;
+  private ByteBuffer currentRegion;
+
+  /**
+   * @param regions mapped regions of the file, whose positions are not changed by the stream
+   */
+  MappedFileInputStream(List<ByteBuffer> regions) {
+    this.regions = regions;
+  }
+
+  /**
+   * Maps the whole file, the mapping remaining valid once the file is closed.
+   */
+  static List<ByteBuffer> map(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      List<ByteBuffer> regions = Lists.newArrayList();
+      for (long position = 0; position < size; position += MAX_REGION_SIZE) {
+        regions.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_REGION_SIZE, size - position)));
+      }
+      return regions;
+    }
+  }
+
+  /**
+   * Releases the mapping of the regions without waiting for them to be garbage collected, so that the file is not kept
+   * locked, on Windows in particular. The regions must not be read afterwards. When the JVM does not allow it,
+   * the mapping is left to the garbage collector.
+   * @return true if the regions were released
+   */
+  static boolean unmap(List<ByteBuffer> regions) {
+    try {
+      for (ByteBuffer region : regions) {
+        release(region);
+      }
+      return true;
+    } catch (Exception e) {
+      JaCoCoExtensions.logger().debug("Unable to release mapped execution data", e);
+      return false;
+    }
+  }
+
+  private static void release(ByteBuffer region) throws ReflectiveOperationException {
+    try {
+      // Java 9 and later
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      invokeCleaner.invoke(theUnsafe.get(null), region);
+    } catch (NoSuchMethodException e) {
+      // Java 7 and 8
+      Method cleanerMethod = region.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(region);
+      if (cleaner != null) {
+        Method cleanMethod = cleaner.getClass().getMethod("clean");
+        cleanMethod.setAccessible(true);
+        cleanMethod.invoke(cleaner);
+      }
+    }
+  }
+
+  @Override
+  public int read() {
+    ByteBuffer region = currentRegion();
+    return region == null ? -1 : (region.get() & 0xFF);
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    ByteBuffer region = currentRegion();
+    if (region == null) {
+      return -1;
+    }
+    int count = Math.min(length, region.remaining());
+    region.get(bytes, offset, count);
+    return count;
+  }
+
+  @Override
+  public int available() {
+    ByteBuffer region = currentRegion();
+    return region == null ? 0 : region.remaining();
+  }
+
+  @CheckForNull
+  private ByteBuffer currentRegion() {
+    while (currentRegion == null || !currentRegion.hasRemaining()) {
+      if (nextRegion >= regions.size()) {
+        return null;
+      }
+      currentRegion = regions.get(nextRegion).duplicate();
+      nextRegion++;
+    }
+    return currentRegion;
+  }
+
+}
@@ -19,7 +19,11 @@
  */
 package org.sonar.plugins.groovy.surefire;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +42,7 @@ import org.sonar.api.utils.ParsingUtils;
 import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.StaxParser;
 import org.sonar.plugins.groovy.foundation.Groovy;
+import org.sonar.plugins.groovy.foundation.ParallelTasks;
 import org.sonar.plugins.groovy.surefire.data.SurefireStaxHandler;
 import org.sonar.plugins.groovy.surefire.data.UnitTestClassReport;
 import org.sonar.plugins.groovy.surefire.data.UnitTestIndex;
@@ -47,8 +52,11 @@ import javax.xml.stream.XMLStreamException;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class GroovySurefireParser implements BatchExtension {
 
@@ -96,14 +104,76 @@ public class GroovySurefireParser implements BatchExtension {
   }
 
   private void parseFiles(SensorContext context, File[] reports) {
-    UnitTestIndex index = new UnitTestIndex();
-    parseFiles(reports, index);
+    UnitTestIndex index;
+    // a single interner for all the reports, so that stack traces repeated across reports are kept once
+    Interner<String> stackTraces = Interners.newWeakInterner();
+    if (groovy.isSurefireStreamingSave()) {
+      index = parseFilesAndSaveResults(reports, groovy.getSurefireMaxStackTraceLength(), stackTraces);
+    } else {
+      index = parseFiles(reports, groovy.getSurefireThreads(), groovy.getSurefireMaxStackTraceLength(), stackTraces);
+    }
     sanitize(index);
     save(index, context);
   }
 
-  private static void parseFiles(File[] reports, UnitTestIndex index) {
-    SurefireStaxHandler staxParser = new SurefireStaxHandler(index);
+  /**
+   * Parses reports one after the other, saving the results of each report as soon as it is parsed.
+   * Only the counters of test classes are kept in the returned index, so that memory does not grow with
+   * the number of test cases and the size of their stack traces.
+   */
+  private UnitTestIndex parseFilesAndSaveResults(File[] reports, int maxStackTraceLength, Interner<String> stackTraces) {
+    UnitTestIndex index = new UnitTestIndex();
+    Map<String, Optional<InputFile>> testFileByClassname = Maps.newHashMap();
+    for (File report : reports) {
+      UnitTestIndex reportIndex = new UnitTestIndex();
+      parseFiles(Collections.singletonList(report), reportIndex, maxStackTraceLength, stackTraces);
+      for (Map.Entry<String, UnitTestClassReport> entry : reportIndex.getIndexByClassname().entrySet()) {
+        // results of inner classes are saved with the ones of their top level class, as done by sanitize
+        String classname = StringUtils.substringBefore(entry.getKey(), "$");
+        Optional<InputFile> testFile = testFileByClassname.get(classname);
+        if (testFile == null) {
+          testFile = Optional.fromNullable(getUnitTestInputFile(classname));
+          testFileByClassname.put(classname, testFile);
+        }
+        if (testFile.isPresent()) {
+          saveResults(testFile.get(), entry.getValue());
+        }
+        entry.getValue().removeResults();
+      }
+      index.addAll(reportIndex);
+    }
+    return index;
+  }
+
+  /**
+   * Parses shards of consecutive reports concurrently, each into its own index, then merges the indexes
+   * in the order of the shards so that results are listed as if the reports were parsed sequentially.
+   */
+  static UnitTestIndex parseFiles(File[] reports, int threads, final int maxStackTraceLength, final Interner<String> stackTraces) {
+    UnitTestIndex index = new UnitTestIndex();
+    if (threads <= 1 || reports.length <= 1) {
+      parseFiles(Arrays.asList(reports), index, maxStackTraceLength, stackTraces);
+      return index;
+    }
+    List<Callable<UnitTestIndex>> tasks = Lists.newArrayList();
+    for (final List<File> shard : Lists.partition(Arrays.asList(reports), (reports.length + threads - 1) / threads)) {
+      tasks.add(new Callable<UnitTestIndex>() {
+        @Override
+        public UnitTestIndex call() {
+          UnitTestIndex shardIndex = new UnitTestIndex();
+          parseFiles(shard, shardIndex, maxStackTraceLength, stackTraces);
+          return shardIndex;
+        }
+      });
+    }
+    for (UnitTestIndex shardIndex : ParallelTasks.run(threads, tasks)) {
+      index.addAll(shardIndex);
+    }
+    return index;
+  }
+
+  private static void parseFiles(List<File> reports, UnitTestIndex index, int maxStackTraceLength, Interner<String> stackTraces) {
+    SurefireStaxHandler staxParser = new SurefireStaxHandler(index, maxStackTraceLength, stackTraces);
     StaxParser parser = new StaxParser(staxParser, false);
     for (File report : reports) {
       try {
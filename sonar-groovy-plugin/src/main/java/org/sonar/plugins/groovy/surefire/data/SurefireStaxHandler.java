@@ -19,6 +19,8 @@
  */
 package org.sonar.plugins.groovy.surefire.data;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.staxmate.in.ElementFilter;
 import org.codehaus.staxmate.in.SMEvent;
@@ -33,10 +35,28 @@ import java.util.Locale;
 
 public class SurefireStaxHandler implements XmlStreamHandler {
 
+  static final String TRUNCATED_STACK_TRACE = "\n\t...";
+
   private final UnitTestIndex index;
+  private final int maxStackTraceLength;
+  /**
+   * Identical stack traces of failures repeated across test cases are kept once.
+   */
+  private final Interner<String> stackTraces;
 
   public SurefireStaxHandler(UnitTestIndex index) {
+    this(index, 0, Interners.<String>newWeakInterner());
+  }
+
+  /**
+   * @param maxStackTraceLength length above which stack traces are truncated, 0 or less to keep them whole
+   * @param stackTraces shared by the handlers of all the reports of an analysis, so that stack traces repeated
+   * across reports are kept once
+   */
+  public SurefireStaxHandler(UnitTestIndex index, int maxStackTraceLength, Interner<String> stackTraces) {
     this.index = index;
+    this.maxStackTraceLength = maxStackTraceLength;
+    this.stackTraces = stackTraces;
   }
 
   @Override
@@ -71,17 +91,24 @@ public class SurefireStaxHandler implements XmlStreamHandler {
     return StringUtils.defaultIfBlank(testClassName, defaultClassname);
   }
 
-  private static void parseTestCase(SMInputCursor testCaseCursor, UnitTestClassReport report) throws XMLStreamException {
+  private void parseTestCase(SMInputCursor testCaseCursor, UnitTestClassReport report) throws XMLStreamException {
     report.add(parseTestResult(testCaseCursor));
   }
 
-  private static void setStackAndMessage(UnitTestResult result, SMInputCursor stackAndMessageCursor) throws XMLStreamException {
+  private void setStackAndMessage(UnitTestResult result, SMInputCursor stackAndMessageCursor) throws XMLStreamException {
     result.setMessage(stackAndMessageCursor.getAttrValue("message"));
     String stack = stackAndMessageCursor.collectDescendantText();
-    result.setStackTrace(stack);
+    result.setStackTrace(stack == null ? null : stackTraces.intern(truncate(stack)));
+  }
+
+  private String truncate(String stack) {
+    if (maxStackTraceLength > 0 && stack.length() > maxStackTraceLength) {
+      return stack.substring(0, maxStackTraceLength) + TRUNCATED_STACK_TRACE;
+    }
+    return stack;
   }
 
-  private static UnitTestResult parseTestResult(SMInputCursor testCaseCursor) throws XMLStreamException {
+  private UnitTestResult parseTestResult(SMInputCursor testCaseCursor) throws XMLStreamException {
     UnitTestResult detail = new UnitTestResult();
     String name = getTestCaseName(testCaseCursor);
     detail.setName(name);
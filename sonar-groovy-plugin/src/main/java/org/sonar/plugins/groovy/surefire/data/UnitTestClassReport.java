@@ -36,8 +36,15 @@ public final class UnitTestClassReport {
   private List<UnitTestResult> results = null;
 
   public UnitTestClassReport add(UnitTestClassReport other) {
-    for (UnitTestResult otherResult : other.getResults()) {
-      add(otherResult);
+    errors += other.errors;
+    failures += other.failures;
+    skipped += other.skipped;
+    tests += other.tests;
+    durationMilliseconds += other.durationMilliseconds;
+    negativeTimeTestNumber += other.negativeTimeTestNumber;
+    if (other.results != null) {
+      initResults();
+      results.addAll(other.results);
     }
     return this;
   }
@@ -93,6 +100,17 @@ public final class UnitTestClassReport {
     return negativeTimeTestNumber;
   }
 
+  /**
+   * Removes the results kept so far, while keeping the counters of the tests they relate to.
+   *
+   * @return the removed results
+   */
+  public List<UnitTestResult> removeResults() {
+    List<UnitTestResult> removedResults = getResults();
+    results = null;
+    return removedResults;
+  }
+
   public List<UnitTestResult> getResults() {
     if (results == null) {
       return Collections.emptyList();
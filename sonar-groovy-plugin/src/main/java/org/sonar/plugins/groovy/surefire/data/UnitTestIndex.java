@@ -69,6 +69,20 @@ public class UnitTestIndex {
     return null;
   }
 
+  /**
+   * Adds the results of another index, typically built from other reports, to this one.
+   */
+  public void addAll(UnitTestIndex other) {
+    for (Map.Entry<String, UnitTestClassReport> entry : other.indexByClassname.entrySet()) {
+      UnitTestClassReport classReport = indexByClassname.get(entry.getKey());
+      if (classReport == null) {
+        indexByClassname.put(entry.getKey(), entry.getValue());
+      } else {
+        classReport.add(entry.getValue());
+      }
+    }
+  }
+
   public void remove(String classname) {
     indexByClassname.remove(classname);
   }
@@ -19,7 +19,9 @@
  */
 package org.sonar.plugins.groovy;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.InputFile;
@@ -32,7 +34,9 @@ import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.resources.Project;
 import org.sonar.api.test.IsMeasure;
+import org.sonar.plugins.groovy.foundation.AnalysisCache;
 import org.sonar.plugins.groovy.foundation.Groovy;
+import org.sonar.plugins.groovy.foundation.GroovySourceCache;
 
 import java.io.File;
 
@@ -46,10 +50,14 @@ import static org.mockito.Mockito.when;
 
 public class GroovySensorTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private Settings settings = new Settings();
   private FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
   private DefaultFileSystem fileSystem = new DefaultFileSystem(new File("."));
-  private GroovySensor sensor = new GroovySensor(settings, fileLinesContextFactory, fileSystem);
+  private GroovySensor sensor = new GroovySensor(settings, fileLinesContextFactory, fileSystem, new Groovy(settings), new GroovySourceCache(settings),
+    new AnalysisCache(settings, fileSystem));
 
   @Test
   public void should_execute_on_project() {
@@ -74,6 +82,34 @@ public class GroovySensorTest {
     testMetrics(true, 1.0);
   }
 
+  @Test
+  public void compute_metrics_sequentially() {
+    settings.setProperty(GroovyPlugin.GMETRICS_THREADS, 1);
+    testMetrics(false, 5.0);
+  }
+
+  @Test
+  public void compute_metrics_concurrently() {
+    settings.setProperty(GroovyPlugin.GMETRICS_THREADS, 4);
+    testMetrics(false, 5.0);
+  }
+
+  @Test
+  public void compute_metrics_from_analysis_cache() throws Exception {
+    settings.setProperty(GroovyPlugin.ANALYSIS_CACHE_ENABLED, true);
+    fileSystem.setWorkDir(temp.newFolder("work"));
+    sensor = new GroovySensor(settings, fileLinesContextFactory, fileSystem, new Groovy(settings), new GroovySourceCache(settings), new AnalysisCache(settings, fileSystem));
+    testMetrics(false, 5.0);
+    assertThat(new File(fileSystem.workDir(), "groovy-cache/lines").list()).hasSize(1);
+    assertThat(new File(fileSystem.workDir(), "groovy-cache/complexity").list()).hasSize(1);
+
+    // same results replayed by a new analysis
+    fileSystem = new DefaultFileSystem(new File("."));
+    fileSystem.setWorkDir(new File(temp.getRoot(), "work"));
+    sensor = new GroovySensor(settings, fileLinesContextFactory, fileSystem, new Groovy(settings), new GroovySourceCache(settings), new AnalysisCache(settings, fileSystem));
+    testMetrics(false, 5.0);
+  }
+
   private void testMetrics(boolean headerComment, double expectedCommentMetric) {
     settings.appendProperty(GroovyPlugin.IGNORE_HEADER_COMMENTS, "" + headerComment);
     SensorContext context = mock(SensorContext.class);
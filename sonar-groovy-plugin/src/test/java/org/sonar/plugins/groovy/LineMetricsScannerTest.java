@@ -0,0 +1,124 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collection;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LineMetricsScannerTest {
+
+  @Test
+  public void should_classify_lines() {
+    LineMetrics metrics = scan("/* header\n */\npackage a\n\n// comment\ndef s = '''x\ny\n'''\n");
+    assertThat(metrics.getLines()).isEqualTo(9);
+    assertThat(metrics.getNcloc()).isEqualTo(2);
+    assertThat(metrics.getComments()).isEqualTo(3);
+    assertThat(LineMetricsScanner.scan("/* header\n */\n".toCharArray(), true).getComments()).isZero();
+  }
+
+  @Test
+  public void should_count_lines_of_gstring_expressions() {
+    LineMetrics metrics = scan("def s = \"\"\"a\nb\n$c\n${\nd}\ne\"\"\"");
+    assertThat(metrics.getLines()).isEqualTo(6);
+    assertThat(metrics.isCodeLine(1)).isTrue();
+    assertThat(metrics.isCodeLine(2)).isFalse();
+    assertThat(metrics.isCodeLine(3)).isTrue();
+    assertThat(metrics.isCodeLine(4)).isTrue();
+    assertThat(metrics.isCodeLine(5)).isTrue();
+    assertThat(metrics.isCodeLine(6)).isFalse();
+  }
+
+  @Test
+  public void should_distinguish_slashy_strings_from_divisions() {
+    LineMetrics metrics = scan("def r = /a\n b/\ndef d = a / 2 // c\ndef e = $/x\n/* y/$\n");
+    assertThat(metrics.getNcloc()).isEqualTo(3);
+    assertThat(metrics.getComments()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_give_up_on_unsupported_syntax() {
+    assertThat(LineMetricsScanner.scan("def s = 'a\nb'".toCharArray(), false)).isNull();
+    assertThat(LineMetricsScanner.scan("def s = \"$ \"".toCharArray(), false)).isNull();
+    assertThat(LineMetricsScanner.scan("/* a".toCharArray(), false)).isNull();
+    assertThat(LineMetricsScanner.scan("a = `b`".toCharArray(), false)).isNull();
+    assertThat(LineMetricsScanner.scan("f(a, // b\n c)".toCharArray(), false)).isNull();
+    assertThat(LineMetricsScanner.scan("a = b\n/c/".toCharArray(), false)).isNull();
+    assertThat(LineMetricsScanner.scan("return /a/".toCharArray(), false)).isNull();
+    assertThat(LineMetricsScanner.scan("case $/a/$:".toCharArray(), false)).isNull();
+  }
+
+  @Test
+  public void should_fall_back_to_the_lexer_on_slashes_after_keywords() throws Exception {
+    assertSameAsLexerWithFallback("def f() {\n  return /foo\nbar\"//x/\n}\n");
+    assertSameAsLexerWithFallback("switch (a) {\n  case /x\n// y/: break\n}\n");
+    assertSameAsLexerWithFallback("assert a in /b\n\"c/\n");
+  }
+
+  @Test
+  public void should_give_the_same_results_as_the_lexer() throws Exception {
+    assertSameAsLexer("#!/usr/bin/env groovy\nprintln 'a'\n");
+    assertSameAsLexer("class A {\r\n  def a = \"x${b.c { it } }y\" // d\r\n  /* e\r\n  */ def f() { a++ / 2 }\r\n}");
+    assertSameAsLexer("def a = 1 \\\n  + 2\n\n\n");
+    assertSameAsLexer("def a = $/x\n// y \"/$\ndef b = $/a $$ b/$ // c\n");
+    assertSameAsLexer("f(/a\n//b/, /c\n\"d/)\ndef m = [(/e/): /f\n/* g/]\n");
+    assertSameAsLexer("def a = this / 2\ndef b = c / d // e\n");
+  }
+
+  @Test
+  public void should_give_the_same_results_as_the_lexer_on_test_files() throws Exception {
+    Collection<File> files = FileUtils.listFiles(new File("src/test/resources"), new String[] {"groovy"}, true);
+    assertThat(files).isNotEmpty();
+    int scannedFiles = 0;
+    for (File file : files) {
+      String text = FileUtils.readFileToString(file);
+      if (LineMetricsScanner.scan(text.toCharArray(), false) != null) {
+        scannedFiles++;
+      }
+      assertSameAsLexerWithFallback(text);
+    }
+    assertThat(scannedFiles).isGreaterThan(0);
+  }
+
+  private static LineMetrics scan(String text) {
+    LineMetrics metrics = LineMetricsScanner.scan(text.toCharArray(), false);
+    assertThat(metrics).isNotNull();
+    return metrics;
+  }
+
+  private static void assertSameAsLexer(String text) throws Exception {
+    for (boolean ignoreHeaderComments : new boolean[] {false, true}) {
+      LineMetrics metrics = LineMetricsScanner.scan(text.toCharArray(), ignoreHeaderComments);
+      assertThat(metrics).isNotNull();
+      assertThat(metrics).isEqualTo(GroovySensor.lexLineMetrics(text, ignoreHeaderComments));
+    }
+  }
+
+  private static void assertSameAsLexerWithFallback(String text) throws Exception {
+    for (boolean ignoreHeaderComments : new boolean[] {false, true}) {
+      assertThat(GroovySensor.computeLineMetrics(text, ignoreHeaderComments)).isEqualTo(GroovySensor.lexLineMetrics(text, ignoreHeaderComments));
+    }
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.cobertura;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.measures.CoverageMeasuresBuilder;
+import org.sonar.plugins.groovy.foundation.GroovyFileSystem;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CoberturaReportParserTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_resolve_each_filename_once_across_packages() throws Exception {
+    File baseDir = temp.newFolder();
+    DefaultFileSystem fileSystem = new DefaultFileSystem(baseDir);
+    DefaultInputFile inputFile = new DefaultInputFile("src/example/Hello.groovy")
+      .setAbsolutePath(new File(baseDir, "src/example/Hello.groovy").getAbsolutePath())
+      .setLines(10);
+    fileSystem.add(inputFile);
+    GroovyFileSystem groovyFileSystem = spy(new GroovyFileSystem(fileSystem));
+
+    File report = temp.newFile("coverage.xml");
+    Files.write("<coverage><sources><source>" + new File(baseDir, "other").getAbsolutePath() + "</source>" +
+      "<source>" + new File(baseDir, "src").getAbsolutePath() + "</source></sources><packages>" +
+      packageOf("example", "1", "example/Hello.groovy", "example/Missing.groovy") +
+      packageOf("example.nested", "2", "example/Hello.groovy", "example/Missing.groovy") +
+      "</packages></coverage>", report, Charsets.UTF_8);
+
+    Map<InputFile, CoverageMeasuresBuilder> coverageByFile = new CoberturaReportParser(groovyFileSystem).parseReport(report);
+
+    assertThat(coverageByFile).hasSize(1);
+    assertThat(coverageByFile.get(inputFile).getHitsByLine().get(1)).isEqualTo(3);
+    verify(groovyFileSystem, times(4)).inputFileFromAbsolutePath(anyString());
+  }
+
+  private static String packageOf(String name, String hits, String... filenames) {
+    StringBuilder classes = new StringBuilder();
+    for (String filename : filenames) {
+      classes.append("<class filename=\"").append(filename).append("\"><lines><line number=\"1\" hits=\"").append(hits).append("\"/></lines></class>");
+    }
+    return "<package name=\"" + name + "\"><classes>" + classes + "</classes></package>";
+  }
+
+  @Test
+  public void should_sum_hits_and_keep_best_condition_coverage() {
+    CoverageMeasuresBuilder first = CoverageMeasuresBuilder.create()
+      .setHits(1, 2)
+      .setHits(2, 0)
+      .setConditions(2, 4, 1);
+    CoverageMeasuresBuilder second = CoverageMeasuresBuilder.create()
+      .setHits(2, 3)
+      .setHits(5, 1)
+      .setConditions(2, 4, 3);
+
+    CoverageMeasuresBuilder merged = CoberturaReportParser.merge(first, second);
+
+    assertThat(merged.getHitsByLine()).hasSize(3);
+    assertThat(merged.getHitsByLine().get(1)).isEqualTo(2);
+    assertThat(merged.getHitsByLine().get(2)).isEqualTo(3);
+    assertThat(merged.getHitsByLine().get(5)).isEqualTo(1);
+    assertThat(merged.getConditionsByLine().get(2)).isEqualTo(4);
+    assertThat(merged.getCoveredConditionsByLine().get(2)).isEqualTo(3);
+  }
+
+  @Test
+  public void should_under_report_conditions_covered_by_different_reports() {
+    // each report covers a different half of the conditions of line 3, the merge only knows one half is covered
+    CoverageMeasuresBuilder first = CoverageMeasuresBuilder.create()
+      .setHits(3, 1)
+      .setConditions(3, 4, 2);
+    CoverageMeasuresBuilder second = CoverageMeasuresBuilder.create()
+      .setHits(3, 1)
+      .setConditions(3, 4, 2)
+      .setHits(7, 1)
+      .setConditions(7, 2, 1);
+
+    CoverageMeasuresBuilder merged = CoberturaReportParser.merge(first, second);
+
+    assertThat(merged.getHitsByLine().get(3)).isEqualTo(2);
+    assertThat(merged.getConditionsByLine().get(3)).isEqualTo(4);
+    assertThat(merged.getCoveredConditionsByLine().get(3)).isEqualTo(2);
+    // conditions of a line found in a single report are kept as is
+    assertThat(merged.getConditionsByLine().get(7)).isEqualTo(2);
+    assertThat(merged.getCoveredConditionsByLine().get(7)).isEqualTo(1);
+  }
+
+  @Test
+  public void should_add_coverage_of_new_file_as_is() {
+    Map<InputFile, CoverageMeasuresBuilder> coverageByFile = Maps.newHashMap();
+    InputFile inputFile = mock(InputFile.class);
+    CoverageMeasuresBuilder coverage = CoverageMeasuresBuilder.create().setHits(1, 1);
+
+    CoberturaReportParser.addCoverage(coverageByFile, inputFile, coverage);
+    assertThat(coverageByFile.get(inputFile)).isSameAs(coverage);
+
+    CoberturaReportParser.addCoverage(coverageByFile, inputFile, CoverageMeasuresBuilder.create().setHits(1, 2));
+    assertThat(coverageByFile.get(inputFile).getHitsByLine().get(1)).isEqualTo(3);
+  }
+
+}
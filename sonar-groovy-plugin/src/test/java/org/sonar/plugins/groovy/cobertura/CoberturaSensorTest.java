@@ -19,7 +19,11 @@
  */
 package org.sonar.plugins.groovy.cobertura;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.batch.SensorContext;
@@ -31,10 +35,17 @@ import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.config.Settings;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Project;
+import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.plugins.groovy.GroovyPlugin;
 import org.sonar.plugins.groovy.foundation.Groovy;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -57,7 +68,7 @@ public class CoberturaSensorTest {
     settings = new Settings();
     settings.addProperties(ImmutableMap.of(GroovyPlugin.COBERTURA_REPORT_PATH, "src/test/resources/org/sonar/plugins/groovy/cobertura/coverage.xml"));
     fileSystem = new DefaultFileSystem(new File("."));
-    sensor = new CoberturaSensor(settings, fileSystem);
+    sensor = new CoberturaSensor(new Groovy(settings), fileSystem, new PathResolver());
     project = mock(Project.class);
     context = mock(SensorContext.class);
   }
@@ -66,13 +77,34 @@ public class CoberturaSensorTest {
    * See SONARPLUGINS-696
    */
   @Test
-  public void should_parse_report() {
+  public void should_parse_report() throws Exception {
     FileSystem mockfileSystem = mock(FileSystem.class);
     when(mockfileSystem.predicates()).thenReturn(fileSystem.predicates());
-    InputFile mockInputFile = mock(InputFile.class);
-    when(mockInputFile.lines()).thenReturn(Integer.MAX_VALUE);
-    when(mockfileSystem.inputFile(any(FilePredicate.class))).thenReturn(mockInputFile);
-    sensor = new CoberturaSensor(settings, mockfileSystem);
+    when(mockfileSystem.inputFiles(any(FilePredicate.class))).thenReturn(inputFilesOfReport());
+    sensor = new CoberturaSensor(new Groovy(settings), mockfileSystem, new PathResolver());
+    sensor.analyse(project, context);
+    verify(context, times(298)).saveMeasure(any(InputFile.class), any(Measure.class));
+  }
+
+  @Test
+  public void should_parse_report_declaring_sources_after_packages() throws Exception {
+    FileSystem mockfileSystem = mock(FileSystem.class);
+    when(mockfileSystem.predicates()).thenReturn(fileSystem.predicates());
+    when(mockfileSystem.inputFiles(any(FilePredicate.class))).thenReturn(inputFilesOfReport());
+    settings.setProperty(GroovyPlugin.COBERTURA_REPORT_PATH, "src/test/resources/org/sonar/plugins/groovy/cobertura/coverage-sources-last.xml");
+    sensor = new CoberturaSensor(new Groovy(settings), mockfileSystem, new PathResolver());
+    sensor.analyse(project, context);
+    verify(context, times(298)).saveMeasure(any(InputFile.class), any(Measure.class));
+  }
+
+  @Test
+  public void should_merge_coverage_of_several_reports() throws Exception {
+    FileSystem mockfileSystem = mock(FileSystem.class);
+    when(mockfileSystem.predicates()).thenReturn(fileSystem.predicates());
+    when(mockfileSystem.inputFiles(any(FilePredicate.class))).thenReturn(inputFilesOfReport());
+    settings.setProperty(GroovyPlugin.COBERTURA_REPORT_PATH, "src/test/resources/org/sonar/plugins/groovy/cobertura/coverage*.xml, unknown.xml");
+    settings.setProperty(GroovyPlugin.COBERTURA_THREADS, 2);
+    sensor = new CoberturaSensor(new Groovy(settings), mockfileSystem, new PathResolver());
     sensor.analyse(project, context);
     verify(context, times(298)).saveMeasure(any(InputFile.class), any(Measure.class));
   }
@@ -81,15 +113,15 @@ public class CoberturaSensorTest {
   public void should_not_save_any_measure_if_files_can_not_be_found() {
     FileSystem mockfileSystem = mock(FileSystem.class);
     when(mockfileSystem.predicates()).thenReturn(fileSystem.predicates());
-    when(mockfileSystem.inputFile(any(FilePredicate.class))).thenReturn(null);
-    sensor = new CoberturaSensor(settings, mockfileSystem);
+    when(mockfileSystem.inputFiles(any(FilePredicate.class))).thenReturn(Collections.<InputFile>emptyList());
+    sensor = new CoberturaSensor(new Groovy(settings), mockfileSystem, new PathResolver());
     sensor.analyse(project, context);
     verify(context, never()).saveMeasure(any(InputFile.class), any(Measure.class));
   }
 
   @Test
   public void should_not_parse_report_if_settings_does_not_contain_report_path() {
-    sensor = new CoberturaSensor(new Settings(), new DefaultFileSystem(new File(".")));
+    sensor = new CoberturaSensor(new Groovy(new Settings()), new DefaultFileSystem(new File(".")), new PathResolver());
     sensor.analyse(project, context);
     verify(context, never()).saveMeasure(any(InputFile.class), any(Measure.class));
   }
@@ -98,7 +130,7 @@ public class CoberturaSensorTest {
   public void should_not_parse_report_if_report_does_not_exist() {
     Settings settings = new Settings();
     settings.addProperties(ImmutableMap.of(GroovyPlugin.COBERTURA_REPORT_PATH, "org/sonar/plugins/groovy/cobertura/fake-coverage.xml"));
-    sensor = new CoberturaSensor(settings, new DefaultFileSystem(new File(".")));
+    sensor = new CoberturaSensor(new Groovy(settings), new DefaultFileSystem(new File(".")), new PathResolver());
     sensor.analyse(project, context);
     verify(context, never()).saveMeasure(any(InputFile.class), any(Measure.class));
   }
@@ -107,7 +139,7 @@ public class CoberturaSensorTest {
   public void should_use_relative_path_to_get_report() {
     Settings settings = new Settings();
     settings.addProperties(ImmutableMap.of(GroovyPlugin.COBERTURA_REPORT_PATH, "//org/sonar/plugins/groovy/cobertura/fake-coverage.xml"));
-    sensor = new CoberturaSensor(settings, new DefaultFileSystem(new File(".")));
+    sensor = new CoberturaSensor(new Groovy(settings), new DefaultFileSystem(new File(".")), new PathResolver());
     sensor.analyse(project, context);
     verify(context, never()).saveMeasure(any(InputFile.class), any(Measure.class));
   }
@@ -128,4 +160,20 @@ public class CoberturaSensorTest {
     assertThat(sensor.toString()).isEqualTo("Groovy CoberturaSensor");
   }
 
+  private static List<InputFile> inputFilesOfReport() throws IOException {
+    String report = Files.toString(new File("src/test/resources/org/sonar/plugins/groovy/cobertura/coverage.xml"), Charsets.UTF_8);
+    Matcher filename = Pattern.compile("filename=\"([^\"]+)\"").matcher(report);
+    List<InputFile> inputFiles = Lists.newArrayList();
+    Set<String> filenames = Sets.newHashSet();
+    while (filename.find()) {
+      if (filenames.add(filename.group(1))) {
+        InputFile inputFile = mock(InputFile.class);
+        when(inputFile.absolutePath()).thenReturn("/Users/cpicat/myproject/src/groovy/" + filename.group(1));
+        when(inputFile.lines()).thenReturn(Integer.MAX_VALUE);
+        inputFiles.add(inputFile);
+      }
+    }
+    return inputFiles;
+  }
+
 }
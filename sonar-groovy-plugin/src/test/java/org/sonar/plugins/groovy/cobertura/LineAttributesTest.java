@@ -0,0 +1,74 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.cobertura;
+
+import org.junit.Test;
+import org.sonar.api.utils.XmlParserException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LineAttributesTest {
+
+  @Test
+  public void should_decode_line_number() {
+    assertThat(LineAttributes.number("42")).isEqualTo(42);
+    assertThat(LineAttributes.number("-1")).isEqualTo(-1);
+    assertThat(LineAttributes.number("2147483647")).isEqualTo(Integer.MAX_VALUE);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void should_fail_on_invalid_line_number() {
+    LineAttributes.number("4 2");
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void should_fail_on_line_number_overflow() {
+    LineAttributes.number("2147483648");
+  }
+
+  @Test
+  public void should_decode_hits_as_english_number() {
+    assertThat(LineAttributes.hits("0")).isEqualTo(0);
+    assertThat(LineAttributes.hits("1,234")).isEqualTo(1234);
+    assertThat(LineAttributes.hits("12.9")).isEqualTo(12);
+    assertThat(LineAttributes.hits(" 7")).isEqualTo(7);
+    assertThat(LineAttributes.hits("30000000000")).isEqualTo(Integer.MAX_VALUE);
+    assertThat(LineAttributes.hits("-30000000000")).isEqualTo(Integer.MIN_VALUE);
+  }
+
+  @Test(expected = XmlParserException.class)
+  public void should_fail_on_invalid_hits() {
+    LineAttributes.hits("none");
+  }
+
+  @Test
+  public void should_decode_condition_coverage() {
+    assertThat(LineAttributes.conditions("50% (1/2)")).isEqualTo(2);
+    assertThat(LineAttributes.coveredConditions("50% (1/2)")).isEqualTo(1);
+    assertThat(LineAttributes.conditions("33% (10/30)")).isEqualTo(30);
+    assertThat(LineAttributes.coveredConditions("33% (10/30)")).isEqualTo(10);
+  }
+
+  @Test(expected = XmlParserException.class)
+  public void should_fail_on_condition_coverage_without_conditions() {
+    LineAttributes.conditions("50%");
+  }
+
+}
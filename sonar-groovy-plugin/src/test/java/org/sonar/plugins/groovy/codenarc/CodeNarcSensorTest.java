@@ -44,7 +44,9 @@ import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.RuleQuery;
 import org.sonar.plugins.groovy.GroovyPlugin;
+import org.sonar.plugins.groovy.foundation.AnalysisCache;
 import org.sonar.plugins.groovy.foundation.Groovy;
+import org.sonar.plugins.groovy.foundation.GroovySourceCache;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -95,7 +97,7 @@ public class CodeNarcSensorTest {
     fileSystem.setWorkDir(sonarhome);
     groovy = new Groovy(settings);
 
-    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder);
+    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), new AnalysisCache(settings, fileSystem));
 
     issuable = mock(Issuable.class);
     IssueBuilder issueBuilder = mock(IssueBuilder.class);
@@ -139,12 +141,14 @@ public class CodeNarcSensorTest {
 
     FileSystem fileSystem = mock(FileSystem.class);
     when(fileSystem.predicates()).thenReturn(mock(FilePredicates.class));
-    when(fileSystem.inputFile(any(FilePredicate.class))).thenReturn(mock(InputFile.class));
+    InputFile inputFile = mock(InputFile.class);
+    when(inputFile.absolutePath()).thenReturn("org/codenarc/sample/domain/SampleDomain.groovy");
+    when(fileSystem.inputFiles(any(FilePredicate.class))).thenReturn(Arrays.asList(inputFile));
 
     File report = FileUtils.toFile(getClass().getResource("parsing/sample.xml"));
     when(settings.getString(GroovyPlugin.CODENARC_REPORT_PATH)).thenReturn(report.getAbsolutePath());
 
-    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder);
+    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), new AnalysisCache(settings, fileSystem));
     sensor.analyse(project, context);
 
     verify(issuable, atLeastOnce()).addIssue(any(Issue.class));
@@ -158,7 +162,7 @@ public class CodeNarcSensorTest {
     when(settings.getString(GroovyPlugin.CODENARC_REPORT_PATH)).thenReturn(report.getAbsolutePath());
 
     groovy = new Groovy(settings);
-    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder);
+    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), new AnalysisCache(settings, fileSystem));
 
     sensor.analyse(project, context);
 
@@ -173,7 +177,7 @@ public class CodeNarcSensorTest {
     when(settings.getString(GroovyPlugin.CODENARC_REPORT_PATH)).thenReturn(report.getAbsolutePath());
 
     groovy = new Groovy(settings);
-    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder);
+    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), new AnalysisCache(settings, fileSystem));
 
     sensor.analyse(project, context);
 
@@ -186,7 +190,9 @@ public class CodeNarcSensorTest {
 
     FileSystem fileSystem = mock(FileSystem.class);
     when(fileSystem.predicates()).thenReturn(mock(FilePredicates.class));
-    when(fileSystem.inputFile(any(FilePredicate.class))).thenReturn(mock(InputFile.class));
+    InputFile inputFile = mock(InputFile.class);
+    when(inputFile.absolutePath()).thenReturn("org/codenarc/sample/domain/SampleDomain.groovy");
+    when(fileSystem.inputFiles(any(FilePredicate.class))).thenReturn(Arrays.asList(inputFile));
 
     File report = FileUtils.toFile(getClass().getResource("parsing/sample.xml"));
     when(settings.getString(GroovyPlugin.CODENARC_REPORT_PATH)).thenReturn(report.getAbsolutePath());
@@ -194,7 +200,7 @@ public class CodeNarcSensorTest {
 
     groovy = new Groovy(settings);
 
-    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder);
+    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), new AnalysisCache(settings, fileSystem));
     sensor.analyse(project, context);
 
     verify(issuable, never()).addIssue(any(Issue.class));
@@ -220,7 +226,7 @@ public class CodeNarcSensorTest {
     when(profile.getActiveRulesByRepository(CodeNarcRulesDefinition.REPOSITORY_KEY)).thenReturn(Arrays.asList(activeRule));
     when(settings.getString(GroovyPlugin.CODENARC_REPORT_PATH)).thenReturn("");
 
-    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder);
+    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), new AnalysisCache(settings, fileSystem));
     sensor.analyse(project, context);
 
     verify(issuable, times(1)).addIssue(any(Issue.class));
@@ -232,7 +238,7 @@ public class CodeNarcSensorTest {
     when(settings.getString(GroovyPlugin.CODENARC_REPORT_PATH)).thenReturn("../missing_file.xml");
 
     groovy = new Groovy(settings);
-    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder);
+    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), new AnalysisCache(settings, fileSystem));
 
     sensor.analyse(project, context);
 
@@ -263,12 +269,76 @@ public class CodeNarcSensorTest {
     when(profile.getActiveRulesByRepository(CodeNarcRulesDefinition.REPOSITORY_KEY)).thenReturn(Arrays.asList(activeRule));
     when(settings.getString(GroovyPlugin.CODENARC_REPORT_PATH)).thenReturn("");
 
-    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder);
+    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), new AnalysisCache(settings, fileSystem));
     sensor.analyse(project, context);
 
     verify(issuable, times(2)).addIssue(any(Issue.class));
   }
 
+  @Test
+  public void should_run_code_narc_in_parallel() throws IOException {
+    File sonarhome = projectdir.newFolder("sonarhome");
+
+    Rule rule = Rule.create();
+    rule.setRepositoryKey("repoKey");
+    rule.setKey("ruleKey");
+    when(ruleFinder.find(any(RuleQuery.class))).thenReturn(rule);
+
+    DefaultFileSystem fileSystem = new DefaultFileSystem(sonarhome);
+    fileSystem.setWorkDir(sonarhome);
+    for (int i = 0; i < 10; i++) {
+      File dir = new File(sonarhome, "dir" + i);
+      dir.mkdirs();
+      fileSystem.add(new DefaultInputFile("dir" + i + "/sample.groovy").setFile(createSampleFile(dir)).setLanguage(Groovy.KEY).setType(Type.MAIN));
+    }
+
+    ActiveRule activeRule = mock(ActiveRule.class);
+    when(activeRule.getRuleKey()).thenReturn("org.codenarc.rule.basic.EmptyClassRule");
+    when(profile.getActiveRulesByRepository(CodeNarcRulesDefinition.REPOSITORY_KEY)).thenReturn(Arrays.asList(activeRule));
+    when(settings.getString(GroovyPlugin.CODENARC_REPORT_PATH)).thenReturn("");
+    when(settings.getInt(GroovyPlugin.CODENARC_THREADS)).thenReturn(4);
+
+    sensor = new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), new AnalysisCache(settings, fileSystem));
+    sensor.analyse(project, context);
+
+    verify(issuable, times(10)).addIssue(any(Issue.class));
+    verify(ruleFinder, times(1)).find(any(RuleQuery.class));
+  }
+
+  @Test
+  public void should_replay_cached_violations() throws IOException {
+    File sonarhome = projectdir.newFolder("sonarhome");
+    File sample = createSampleFile(sonarhome);
+
+    Rule rule = Rule.create();
+    rule.setRepositoryKey("repoKey");
+    rule.setKey("ruleKey");
+    when(ruleFinder.find(any(RuleQuery.class))).thenReturn(rule);
+
+    DefaultFileSystem fileSystem = new DefaultFileSystem(sonarhome);
+    fileSystem.setWorkDir(sonarhome);
+    fileSystem.add(new DefaultInputFile("sample.groovy").setFile(sample).setLanguage(Groovy.KEY).setType(Type.MAIN));
+
+    ActiveRule activeRule = mock(ActiveRule.class);
+    when(activeRule.getRuleKey()).thenReturn("org.codenarc.rule.basic.EmptyClassRule");
+    when(profile.getActiveRulesByRepository(CodeNarcRulesDefinition.REPOSITORY_KEY)).thenReturn(Arrays.asList(activeRule));
+    when(settings.getString(GroovyPlugin.CODENARC_REPORT_PATH)).thenReturn("");
+    when(settings.getBoolean(GroovyPlugin.ANALYSIS_CACHE_ENABLED)).thenReturn(true);
+
+    AnalysisCache analysisCache = new AnalysisCache(settings, fileSystem);
+    new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), analysisCache).analyse(project, context);
+    assertThat(new File(sonarhome, "groovy-cache/codenarc").list()).hasSize(1);
+
+    new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), analysisCache).analyse(project, context);
+    verify(issuable, times(2)).addIssue(any(Issue.class));
+
+    // a different profile invalidates the cached violations
+    when(activeRule.getRuleKey()).thenReturn("org.codenarc.rule.basic.EmptyMethodRule");
+    new CodeNarcSensor(groovy, perspectives, fileSystem, profile, ruleFinder, new GroovySourceCache(settings), analysisCache).analyse(project, context);
+    assertThat(new File(sonarhome, "groovy-cache/codenarc").list()).hasSize(2);
+    verify(issuable, times(2)).addIssue(any(Issue.class));
+  }
+
   private static File createSampleFile(File sonarhome) throws FileNotFoundException {
     File sample = new File(sonarhome, "sample.groovy");
     PrintWriter pw = new PrintWriter(sample);
@@ -0,0 +1,196 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.codenarc;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.codenarc.rule.AbstractRule;
+import org.codenarc.rule.Violation;
+import org.codenarc.rule.basic.EmptyClassRule;
+import org.codenarc.rule.basic.EmptyMethodRule;
+import org.codenarc.ruleset.ListRuleSet;
+import org.codenarc.ruleset.RuleSet;
+import org.codenarc.source.SourceCode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.groovy.foundation.GroovySourceCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CodeNarcSourceAnalyzerTest {
+
+  private static final int FILES = 8;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_report_violations_in_the_same_order_whatever_the_number_of_threads() throws IOException {
+    List<File> sourceFiles = Lists.newArrayList();
+    Map<File, List<String>> expected = Maps.newLinkedHashMap();
+    for (int i = 0; i < FILES; i++) {
+      // first files have more violations, so that later files are usually analyzed first by concurrent workers
+      int emptyMethods = FILES - i;
+      File file = temp.newFile("Sample" + i + ".groovy");
+      Files.write(sampleSource(i, emptyMethods), file, Charsets.UTF_8);
+      sourceFiles.add(file);
+      expected.put(file, expectedViolations(emptyMethods));
+    }
+
+    Map<File, List<String>> sequential = violations(sourceFiles, 1);
+    assertThat(sequential).isEqualTo(expected);
+    assertThat(Lists.newArrayList(sequential.keySet())).isEqualTo(sourceFiles);
+
+    for (int run = 0; run < 5; run++) {
+      Map<File, List<String>> concurrent = violations(sourceFiles, 4);
+      assertThat(concurrent).isEqualTo(sequential);
+      assertThat(Lists.newArrayList(concurrent.keySet())).isEqualTo(sourceFiles);
+    }
+  }
+
+  @Test
+  public void should_give_each_worker_its_own_rules() throws IOException {
+    List<File> sourceFiles = Lists.newArrayList();
+    for (int i = 0; i < FILES * 4; i++) {
+      File file = temp.newFile("Stateful" + i + ".groovy");
+      Files.write("class Stateful" + i + " {}\n", file, Charsets.UTF_8);
+      sourceFiles.add(file);
+    }
+    final AtomicInteger ruleSetsCreated = new AtomicInteger();
+    Supplier<RuleSet> ruleSets = new Supplier<RuleSet>() {
+      @Override
+      public RuleSet get() {
+        ruleSetsCreated.incrementAndGet();
+        return new ListRuleSet(ImmutableList.of(new StatefulRule()));
+      }
+    };
+
+    CodeNarcSourceAnalyzer analyzer = new CodeNarcSourceAnalyzer(sourceFiles, new GroovySourceCache(new Settings()), 4, ruleSets);
+    analyzer.analyze(ruleSets.get());
+
+    assertThat(ruleSetsCreated.get()).isGreaterThan(1).isLessThanOrEqualTo(5);
+    for (File file : sourceFiles) {
+      List<Violation> violations = analyzer.getViolationsByFile().get(file);
+      assertThat(violations).hasSize(1);
+      assertThat(violations.get(0).getMessage()).isEqualTo(file.getName());
+    }
+  }
+
+  private static Map<File, List<String>> violations(List<File> sourceFiles, int threads) {
+    Supplier<RuleSet> ruleSets = new Supplier<RuleSet>() {
+      @Override
+      public RuleSet get() {
+        return new ListRuleSet(ImmutableList.of(new EmptyMethodRule(), new EmptyClassRule()));
+      }
+    };
+    CodeNarcSourceAnalyzer analyzer = new CodeNarcSourceAnalyzer(sourceFiles, new GroovySourceCache(new Settings()), threads, ruleSets);
+    analyzer.analyze(ruleSets.get());
+
+    Map<File, List<String>> violations = Maps.newLinkedHashMap();
+    for (Entry<File, List<Violation>> entry : analyzer.getViolationsByFile().entrySet()) {
+      List<String> fileViolations = Lists.newArrayList();
+      for (Violation violation : entry.getValue()) {
+        fileViolations.add(violation.getRule().getName() + ":" + violation.getLineNumber());
+      }
+      violations.put(entry.getKey(), fileViolations);
+    }
+    return violations;
+  }
+
+  private static String sampleSource(int index, int emptyMethods) {
+    StringBuilder source = new StringBuilder("class Sample" + index + " {\n");
+    for (int i = 0; i < emptyMethods; i++) {
+      source.append("  void method").append(i).append("() {\n  }\n");
+    }
+    source.append("}\nclass Empty").append(index).append(" {\n}\n");
+    return source.toString();
+  }
+
+  private static List<String> expectedViolations(int emptyMethods) {
+    List<String> violations = Lists.newArrayList();
+    for (int i = 0; i < emptyMethods; i++) {
+      violations.add("EmptyMethod:" + (2 + 2 * i));
+    }
+    violations.add("EmptyClass:" + (3 + 2 * emptyMethods));
+    return violations;
+  }
+
+  /**
+   * Rule keeping the file it visits in a field, as some CodeNarc rules do: it reports a wrong file when it visits
+   * several files at the same time.
+   */
+  private static class StatefulRule extends AbstractRule {
+
+    private String name = "Stateful";
+    private int priority = 2;
+    private SourceCode currentSourceCode;
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public int getPriority() {
+      return priority;
+    }
+
+    @Override
+    public void setPriority(int priority) {
+      this.priority = priority;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void applyTo(SourceCode sourceCode, List violations) {
+      currentSourceCode = sourceCode;
+      try {
+        // gives other workers the time to visit another file
+        Thread.sleep(5);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      Violation violation = new Violation();
+      violation.setRule(this);
+      violation.setLineNumber(1);
+      violation.setMessage(currentSourceCode.getName());
+      violations.add(violation);
+    }
+  }
+
+}
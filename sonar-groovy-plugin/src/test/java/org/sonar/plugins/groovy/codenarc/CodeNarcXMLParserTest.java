@@ -19,15 +19,16 @@
  */
 package org.sonar.plugins.groovy.codenarc;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
-import org.mockito.Matchers;
-import org.mockito.Mockito;
-import org.sonar.api.batch.fs.FilePredicate;
-import org.sonar.api.batch.fs.FilePredicates;
-import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile.Type;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.plugins.groovy.codenarc.CodeNarcXMLParser.CodeNarcViolation;
+import org.sonar.plugins.groovy.codenarc.CodeNarcXMLParser.ViolationHandler;
 
+import java.io.File;
 import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -36,9 +37,7 @@ public class CodeNarcXMLParserTest {
 
   @Test
   public void should_parse_report() throws Exception {
-    FileSystem fileSystem = Mockito.mock(FileSystem.class);
-    Mockito.when(fileSystem.predicates()).thenReturn(Mockito.mock(FilePredicates.class));
-    Mockito.when(fileSystem.hasFiles(Matchers.any(FilePredicate.class))).thenReturn(true);
+    DefaultFileSystem fileSystem = sampleFileSystem();
     List<CodeNarcViolation> violations = CodeNarcXMLParser.parse(FileUtils.toFile(getClass().getResource("parsing/sample.xml")), fileSystem);
 
     assertThat(violations.size()).isEqualTo(16);
@@ -58,9 +57,7 @@ public class CodeNarcXMLParserTest {
 
   @Test
   public void should_not_fail_if_line_number_not_specified() throws Exception {
-    FileSystem fileSystem = Mockito.mock(FileSystem.class);
-    Mockito.when(fileSystem.predicates()).thenReturn(Mockito.mock(FilePredicates.class));
-    Mockito.when(fileSystem.hasFiles(Matchers.any(FilePredicate.class))).thenReturn(true);
+    DefaultFileSystem fileSystem = sampleFileSystem();
     List<CodeNarcViolation> violations = CodeNarcXMLParser.parse(FileUtils.toFile(getClass().getResource("parsing/line-number-not-specified.xml")), fileSystem);
 
     assertThat(violations.size()).isEqualTo(1);
@@ -72,4 +69,51 @@ public class CodeNarcXMLParserTest {
     assertThat(violation.getMessage()).isEqualTo("The cyclomatic complexity for class [org.example.Example] is [27.0]");
   }
 
+  @Test
+  public void should_stream_violations() throws Exception {
+    DefaultFileSystem fileSystem = sampleFileSystem();
+    File report = FileUtils.toFile(getClass().getResource("parsing/sample.xml"));
+    final List<CodeNarcViolation> violations = Lists.newArrayList();
+    CodeNarcXMLParser.parse(report, fileSystem, new ViolationHandler() {
+      @Override
+      public void handle(CodeNarcViolation violation) {
+        violations.add(violation);
+      }
+    });
+
+    assertThat(violations).hasSize(16);
+    assertThat(violations.get(0).getRuleName()).isEqualTo("EmptyElseBlock");
+    assertThat(violations.get(15).getRuleName()).isEqualTo(CodeNarcXMLParser.parse(report, fileSystem).get(15).getRuleName());
+  }
+
+  @Test
+  public void should_resolve_files_of_a_package_in_several_source_directories() throws Exception {
+    DefaultFileSystem fileSystem = new DefaultFileSystem(new File("."));
+    fileSystem.add(mainFile("src/main/groovy", "org/example/First.groovy"));
+    fileSystem.add(mainFile("grails-app/domain", "org/example/Second.groovy"));
+    fileSystem.add(mainFile("src/main/groovy", "org/example/Third.groovy"));
+    List<CodeNarcViolation> violations = CodeNarcXMLParser.parse(
+      FileUtils.toFile(getClass().getResource("parsing/multiple-source-directories.xml")), fileSystem);
+
+    assertThat(violations).hasSize(3);
+    assertThat(violations.get(0).getFilename()).isEqualTo("src/main/groovy/org/example/First.groovy");
+    assertThat(violations.get(1).getFilename()).isEqualTo("grails-app/domain/org/example/Second.groovy");
+    assertThat(violations.get(2).getFilename()).isEqualTo("src/main/groovy/org/example/Third.groovy");
+  }
+
+  private static DefaultFileSystem sampleFileSystem() {
+    DefaultFileSystem fileSystem = new DefaultFileSystem(new File("."));
+    fileSystem.add(mainFile("samples/src", "org/codenarc/sample/domain/SampleDomain.groovy"));
+    fileSystem.add(mainFile("samples/src", "org/codenarc/sample/service/NewService.groovy"));
+    fileSystem.add(mainFile("samples/src", "org/codenarc/sample/service/OtherService.groovy"));
+    fileSystem.add(mainFile("samples/src", "org/codenarc/sample/service/SampleService.groovy"));
+    return fileSystem;
+  }
+
+  private static DefaultInputFile mainFile(String sourceDirectory, String relativePath) {
+    return new DefaultInputFile(sourceDirectory + "/" + relativePath)
+      .setAbsolutePath(new File(sourceDirectory, relativePath).getAbsolutePath())
+      .setType(Type.MAIN);
+  }
+
 }
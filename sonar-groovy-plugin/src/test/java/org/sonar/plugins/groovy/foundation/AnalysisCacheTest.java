@@ -0,0 +1,141 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.foundation;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.groovy.GroovyPlugin;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AnalysisCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Settings settings = new Settings();
+  private DefaultFileSystem fileSystem;
+
+  @Before
+  public void setUp() throws IOException {
+    fileSystem = new DefaultFileSystem(new File("."));
+    fileSystem.setWorkDir(temp.newFolder("work"));
+  }
+
+  @Test
+  public void should_be_disabled_by_default() {
+    AnalysisCache cache = new AnalysisCache(settings, fileSystem);
+    assertThat(cache.isEnabled()).isFalse();
+    cache.put("kind", "key", "value");
+    assertThat(cache.get("kind", "key", String.class)).isNull();
+    assertThat(new File(fileSystem.workDir(), "groovy-cache").exists()).isFalse();
+  }
+
+  @Test
+  public void should_store_and_retrieve_entries() {
+    settings.setProperty(GroovyPlugin.ANALYSIS_CACHE_ENABLED, true);
+    AnalysisCache cache = new AnalysisCache(settings, fileSystem);
+    cache.put("kind", "key", "value");
+
+    AnalysisCache nextAnalysis = new AnalysisCache(settings, fileSystem);
+    assertThat(nextAnalysis.get("kind", "key", String.class)).isEqualTo("value");
+    assertThat(nextAnalysis.get("kind", "other", String.class)).isNull();
+    assertThat(nextAnalysis.get("other", "key", String.class)).isNull();
+    assertThat(nextAnalysis.get("kind", "key", Integer.class)).isNull();
+    assertThat(nextAnalysis.get("kind", null, String.class)).isNull();
+  }
+
+  @Test
+  public void should_invalidate_entries_on_version_change() {
+    settings.setProperty(GroovyPlugin.ANALYSIS_CACHE_ENABLED, true);
+    new AnalysisCache(settings, fileSystem, "1.4/0.24.1/0.7").put("kind", "key", "value");
+
+    assertThat(new AnalysisCache(settings, fileSystem, "1.4/0.24.1/0.7").get("kind", "key", String.class)).isEqualTo("value");
+    assertThat(new AnalysisCache(settings, fileSystem, "1.5/0.24.1/0.7").get("kind", "key", String.class)).isNull();
+    assertThat(new AnalysisCache(settings, fileSystem, "1.4/0.25/0.7").get("kind", "key", String.class)).isNull();
+    assertThat(new AnalysisCache(settings, fileSystem, "1.4/0.24.1/0.8").get("kind", "key", String.class)).isNull();
+  }
+
+  @Test
+  public void should_wipe_cache_of_other_versions() {
+    settings.setProperty(GroovyPlugin.ANALYSIS_CACHE_ENABLED, true);
+    new AnalysisCache(settings, fileSystem, "1.4/0.24.1/0.7").put("kind", "key", "value");
+    File kindDir = new File(fileSystem.workDir(), "groovy-cache/kind");
+    assertThat(kindDir.list()).hasSize(1);
+
+    new AnalysisCache(settings, fileSystem, "1.5/0.24.1/0.7").put("kind", "key", "value");
+    assertThat(kindDir.list()).hasSize(1);
+    assertThat(new AnalysisCache(settings, fileSystem, "1.4/0.24.1/0.7").get("kind", "key", String.class)).isNull();
+  }
+
+  @Test
+  public void should_remove_entries_unused_by_the_analysis() {
+    settings.setProperty(GroovyPlugin.ANALYSIS_CACHE_ENABLED, true);
+    AnalysisCache cache = new AnalysisCache(settings, fileSystem);
+    cache.put("kind", "read", "value");
+    cache.put("kind", "unused", "value");
+    cache.put("other", "written", "value");
+    cache.stop();
+    assertThat(new File(fileSystem.workDir(), "groovy-cache/kind").list()).hasSize(2);
+
+    AnalysisCache nextAnalysis = new AnalysisCache(settings, fileSystem);
+    assertThat(nextAnalysis.get("kind", "read", String.class)).isEqualTo("value");
+    nextAnalysis.put("other", "written", "new value");
+    nextAnalysis.stop();
+
+    AnalysisCache lastAnalysis = new AnalysisCache(settings, fileSystem);
+    assertThat(lastAnalysis.get("kind", "read", String.class)).isEqualTo("value");
+    assertThat(lastAnalysis.get("kind", "unused", String.class)).isNull();
+    assertThat(lastAnalysis.get("other", "written", String.class)).isEqualTo("new value");
+  }
+
+  @Test
+  public void should_read_versions_filtered_by_the_build() {
+    assertThat(AnalysisCache.toolVersions().split("/")).hasSize(3);
+    assertThat(AnalysisCache.toolVersions()).isNotEqualTo("dev/dev/dev");
+  }
+
+  @Test
+  public void should_ignore_corrupted_entries() throws IOException {
+    settings.setProperty(GroovyPlugin.ANALYSIS_CACHE_ENABLED, true);
+    AnalysisCache cache = new AnalysisCache(settings, fileSystem);
+    cache.put("kind", "key", "value");
+    File entry = new File(fileSystem.workDir(), "groovy-cache/kind").listFiles()[0];
+    FileUtils.write(entry, "corrupted");
+
+    assertThat(cache.get("kind", "key", String.class)).isNull();
+  }
+
+  @Test
+  public void key() {
+    assertThat(AnalysisCache.key("a", "b")).isEqualTo(AnalysisCache.key("a", "b"));
+    assertThat(AnalysisCache.key("a", "b")).isNotEqualTo(AnalysisCache.key("ab"));
+    assertThat(AnalysisCache.key("a", null)).isEqualTo(AnalysisCache.key("a", ""));
+  }
+
+}
@@ -67,12 +67,36 @@ public class GroovyFileSystemTest {
     assertThat(groovyFileSystem.sourceInputFileFromRelativePath(null)).isNull();
 
     fileSystem.add(new DefaultInputFile("fake1.file"));
+    groovyFileSystem = new GroovyFileSystem(fileSystem);
     assertThat(groovyFileSystem.sourceInputFileFromRelativePath("fake1.file")).isNull();
 
     fileSystem.add(new DefaultInputFile("fake2.file").setType(Type.MAIN).setLanguage(Groovy.KEY));
+    groovyFileSystem = new GroovyFileSystem(fileSystem);
     assertThat(groovyFileSystem.sourceInputFileFromRelativePath("fake2.file")).isNotNull();
 
     fileSystem.add(new DefaultInputFile("org/sample/foo/fake3.file").setType(Type.MAIN).setLanguage(Groovy.KEY));
+    groovyFileSystem = new GroovyFileSystem(fileSystem);
     assertThat(groovyFileSystem.sourceInputFileFromRelativePath("foo/fake3.file")).isNotNull();
+    assertThat(groovyFileSystem.sourceInputFileFromRelativePath("oo/fake3.file")).isNull();
+    assertThat(groovyFileSystem.sourceInputFileFromPackage("org/sample/foo", "fake3.file")).isNotNull();
+    assertThat(groovyFileSystem.sourceInputFileFromPackage("", "fake2.file")).isNotNull();
+  }
+
+  @Test
+  public void inputFileFromRelativePath_should_not_guess_between_several_files() {
+    fileSystem.add(new DefaultInputFile("a/foo/fake.file").setType(Type.MAIN).setLanguage(Groovy.KEY));
+    fileSystem.add(new DefaultInputFile("b/foo/fake.file").setType(Type.MAIN).setLanguage(Groovy.KEY));
+    assertThat(groovyFileSystem.sourceInputFileFromRelativePath("foo/fake.file")).isNull();
+    assertThat(groovyFileSystem.sourceInputFileFromRelativePath("a/foo/fake.file").relativePath()).isEqualTo("a/foo/fake.file");
+  }
+
+  @Test
+  public void inputFileFromAbsolutePath() {
+    File file = new File("src/foo/fake.groovy");
+    fileSystem.add(new DefaultInputFile("src/foo/fake.groovy").setAbsolutePath(file.getAbsolutePath()));
+    assertThat(groovyFileSystem.inputFile(file)).isNotNull();
+    assertThat(groovyFileSystem.inputFileFromAbsolutePath(file.getAbsolutePath())).isNotNull();
+    assertThat(groovyFileSystem.inputFileFromAbsolutePath(new File("src/foo/../foo/fake.groovy").getAbsolutePath())).isNotNull();
+    assertThat(groovyFileSystem.inputFileFromAbsolutePath(new File("src/fake.groovy").getAbsolutePath())).isNull();
   }
 }
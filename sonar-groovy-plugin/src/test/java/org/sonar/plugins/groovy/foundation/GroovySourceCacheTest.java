@@ -0,0 +1,114 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.foundation;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.groovy.GroovyPlugin;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class GroovySourceCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Settings settings = new Settings();
+
+  @Test
+  public void should_read_file_once() throws IOException {
+    GroovySourceCache cache = new GroovySourceCache(settings);
+    File file = new File("src/test/resources/org/sonar/plugins/groovy/foundation/Greet.groovy");
+
+    GroovySource source = cache.get(file);
+    assertThat(source.getText()).isEqualTo(FileUtils.readFileToString(file));
+
+    assertThat(cache.get(file)).isSameAs(source);
+    assertThat(cache.get(new File(file.getAbsolutePath()))).isSameAs(source);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_compile_file_once() throws IOException {
+    GroovySourceCache cache = new GroovySourceCache(settings);
+    File file = new File("src/test/resources/org/sonar/plugins/groovy/foundation/Greet.groovy");
+    GroovySource source = cache.get(file);
+
+    assertThat(source.getAst()).isNotNull();
+    assertThat(source.getAst().getClasses()).isNotEmpty();
+    assertThat(cache.get(file).getAst()).isSameAs(source.getAst());
+    assertThat(new org.sonar.plugins.groovy.codenarc.CachedSourceFile(source).getAst()).isSameAs(source.getAst());
+    assertThat(new org.sonar.plugins.groovy.gmetrics.CachedSourceFile(source).getAst()).isSameAs(source.getAst());
+  }
+
+  @Test
+  public void should_not_fail_on_invalid_file() throws IOException {
+    GroovySource source = new GroovySourceCache(settings).get(new File("src/test/resources/org/sonar/plugins/groovy/foundation/Error.groovy"));
+    assertThat(source.getAst()).isNull();
+  }
+
+  @Test
+  public void should_keep_source_of_file_rewritten_with_same_content() throws IOException {
+    GroovySourceCache cache = new GroovySourceCache(settings);
+    File file = temp.newFile("Sample.groovy");
+    FileUtils.write(file, "class A {}");
+    GroovySource source = cache.get(file);
+
+    FileUtils.write(file, "class A {}");
+    assertThat(file.setLastModified(file.lastModified() + 2000)).isTrue();
+    assertThat(cache.get(file)).isSameAs(source);
+  }
+
+  @Test
+  public void should_reload_modified_file() throws IOException {
+    GroovySourceCache cache = new GroovySourceCache(settings);
+    File file = temp.newFile("Sample.groovy");
+    FileUtils.write(file, "class A {}");
+    GroovySource source = cache.get(file);
+
+    FileUtils.write(file, "class AB {}");
+    assertThat(cache.get(file)).isNotSameAs(source);
+    assertThat(cache.get(file).getText()).isEqualTo("class AB {}");
+  }
+
+  @Test
+  public void should_be_bounded_by_source_size() throws IOException {
+    settings.setProperty(GroovyPlugin.SOURCE_CACHE_MAX_SIZE, 1);
+    GroovySourceCache cache = new GroovySourceCache(settings);
+    for (int i = 0; i < 3; i++) {
+      File file = temp.newFile("Big" + i + ".groovy");
+      FileUtils.write(file, "class Big" + i + " {}" + new String(new char[600 * 1024]).replace('\0', ' '));
+      cache.get(file);
+    }
+    assertThat(cache.size()).isLessThan(3);
+  }
+
+  @Test(expected = IOException.class)
+  public void should_fail_on_missing_file() throws IOException {
+    new GroovySourceCache(settings).get(new File("unknown.groovy"));
+  }
+
+}
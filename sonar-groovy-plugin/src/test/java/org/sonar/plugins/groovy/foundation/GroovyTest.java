@@ -42,6 +42,29 @@ public class GroovyTest {
     assertThat(language.getFileSuffixes()).containsOnly(".groovy", ".grvy");
   }
 
+  @Test
+  public void gmetrics_threads() {
+    Settings settings = new Settings();
+    Groovy language = new Groovy(settings);
+    assertThat(language.getGMetricsThreads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+
+    settings.setProperty(GroovyPlugin.GMETRICS_THREADS, 3);
+    assertThat(language.getGMetricsThreads()).isEqualTo(3);
+  }
+
+  @Test
+  public void cobertura_settings() {
+    Settings settings = new Settings();
+    Groovy language = new Groovy(settings);
+    assertThat(language.getCoberturaReportPath()).isNull();
+    assertThat(language.getCoberturaThreads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+
+    settings.setProperty(GroovyPlugin.COBERTURA_REPORT_PATH, "target/coverage.xml");
+    settings.setProperty(GroovyPlugin.COBERTURA_THREADS, 2);
+    assertThat(language.getCoberturaReportPath()).isEqualTo("target/coverage.xml");
+    assertThat(language.getCoberturaThreads()).isEqualTo(2);
+  }
+
   @Test
   public void binaryDirectories() throws Exception {
     Settings settings = new Settings();
@@ -0,0 +1,97 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.foundation;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ParallelTasksTest {
+
+  @Test
+  public void thread_count() {
+    assertThat(ParallelTasks.threadCount(3)).isEqualTo(3);
+    assertThat(ParallelTasks.threadCount(0)).isEqualTo(Runtime.getRuntime().availableProcessors());
+    assertThat(ParallelTasks.threadCount(-1)).isEqualTo(Runtime.getRuntime().availableProcessors());
+  }
+
+  @Test
+  public void results_are_in_task_order() {
+    assertThat(ParallelTasks.run(1, tasks(20))).isEqualTo(expected(20));
+    assertThat(ParallelTasks.run(4, tasks(20))).isEqualTo(expected(20));
+    assertThat(ParallelTasks.run(4, tasks(0))).isEmpty();
+  }
+
+  @Test
+  public void shared_executor_runs_several_batches_in_task_order() {
+    for (int threads : new int[] {1, 4}) {
+      ExecutorService executor = ParallelTasks.newExecutor(threads);
+      try {
+        assertThat(ParallelTasks.run(executor, tasks(20))).isEqualTo(expected(20));
+        assertThat(ParallelTasks.run(executor, tasks(10))).isEqualTo(expected(10));
+        assertThat(executor.isShutdown()).isFalse();
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void should_propagate_runtime_exception() {
+    List<Callable<Integer>> tasks = tasks(5);
+    tasks.add(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        throw new IllegalArgumentException();
+      }
+    });
+    ParallelTasks.run(4, tasks);
+  }
+
+  private static List<Callable<Integer>> tasks(int count) {
+    List<Callable<Integer>> tasks = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      final int value = i;
+      tasks.add(new Callable<Integer>() {
+        @Override
+        public Integer call() throws InterruptedException {
+          // later tasks end first
+          Thread.sleep(20 - value);
+          return value;
+        }
+      });
+    }
+    return tasks;
+  }
+
+  private static List<Integer> expected(int count) {
+    List<Integer> expected = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      expected.add(i);
+    }
+    return expected;
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.foundation;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.scan.filesystem.PathResolver;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReportFilesTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private PathResolver pathResolver = new PathResolver();
+  private File baseDir;
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = temp.getRoot();
+    temp.newFolder("target", "shard1");
+    temp.newFolder("target", "shard2");
+    temp.newFolder("target", "shard2", "nested");
+    temp.newFile("target/jacoco.exec");
+    temp.newFile("target/shard1/jacoco-1.exec");
+    temp.newFile("target/shard2/jacoco-2.exec");
+    temp.newFile("target/shard2/other.exec");
+    temp.newFile("target/shard2/nested/jacoco-3.exec");
+  }
+
+  @Test
+  public void should_resolve_list_of_paths() {
+    assertThat(ReportFiles.resolve(pathResolver, baseDir, " target/jacoco.exec , unknown.exec,")).containsExactly(
+      new File(baseDir, "target/jacoco.exec"),
+      new File(baseDir, "unknown.exec"));
+    assertThat(ReportFiles.resolve(pathResolver, baseDir, null)).isEmpty();
+  }
+
+  @Test
+  public void should_resolve_wildcards() {
+    assertThat(ReportFiles.resolve(pathResolver, baseDir, "target/**/jacoco*.exec")).containsExactly(
+      new File(baseDir, "target/jacoco.exec"),
+      new File(baseDir, "target/shard1/jacoco-1.exec"),
+      new File(baseDir, "target/shard2/jacoco-2.exec"),
+      new File(baseDir, "target/shard2/nested/jacoco-3.exec"));
+    assertThat(ReportFiles.resolve(pathResolver, baseDir, "target/shard?/*.exec")).containsExactly(
+      new File(baseDir, "target/shard1/jacoco-1.exec"),
+      new File(baseDir, "target/shard2/jacoco-2.exec"),
+      new File(baseDir, "target/shard2/other.exec"));
+    assertThat(ReportFiles.resolve(pathResolver, baseDir, new File(baseDir, "target").getAbsolutePath() + "/*.exec")).containsExactly(
+      new File(baseDir, "target/jacoco.exec"));
+    assertThat(ReportFiles.resolve(pathResolver, baseDir, "target/*/*/*.exec")).containsExactly(
+      new File(baseDir, "target/shard2/nested/jacoco-3.exec"));
+    assertThat(ReportFiles.resolve(pathResolver, baseDir, "unknown/*.exec")).isEmpty();
+  }
+
+  @Test
+  public void should_keep_existing_files() {
+    assertThat(ReportFiles.existing(ReportFiles.resolve(pathResolver, baseDir, "target/jacoco.exec,unknown.exec,target"))).containsExactly(
+      new File(baseDir, "target/jacoco.exec"));
+  }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.jacoco;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.test.TestUtils;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AbstractAnalyzerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_read_source_file_name_of_class() throws Exception {
+    assertThat(AbstractAnalyzer.sourceFileName(new ClassFile.Reader(), ClassFile.of(TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/Hello.class.toCopy")))).isEqualTo("Hello.groovy");
+    assertThat(AbstractAnalyzer.sourceFileName(new ClassFile.Reader(), ClassFile.of(TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/Hello$InnerClass.class.toCopy")))).isEqualTo("Hello.groovy");
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void should_fail_to_read_source_file_name_of_invalid_class() throws Exception {
+    AbstractAnalyzer.sourceFileName(new ClassFile.Reader(), ClassFile.of(temp.newFile("Invalid.class")));
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.jacoco;
+
+import com.google.common.io.Files;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.groovy.GroovyPlugin;
+import org.sonar.plugins.groovy.foundation.AnalysisCache;
+import org.sonar.test.TestUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ClassCoverageCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Settings settings = new Settings();
+  private DefaultFileSystem fileSystem;
+  private ExecutionDataStore executionData;
+  private byte[] classBytes;
+
+  @Before
+  public void setUp() throws IOException {
+    fileSystem = new DefaultFileSystem(new File("."));
+    fileSystem.setWorkDir(temp.newFolder("work"));
+    ExecutionDataVisitor executionDataVisitor = new ExecutionDataVisitor();
+    new JaCoCoReportReader(TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCoSensor_0_7_5/jacoco-ut.exec"))
+      .readJacocoReport(executionDataVisitor, executionDataVisitor);
+    executionData = executionDataVisitor.getMerged();
+    classBytes = Files.toByteArray(TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/Hello.class.toCopy"));
+  }
+
+  @Test
+  public void key_should_depend_on_execution_data() {
+    ClassCoverageCache.Key key = ClassCoverageCache.key(executionData, classBytes, true);
+    assertThat(key).isNotNull();
+    assertThat(key.isPersistent()).isFalse();
+    assertThat(ClassCoverageCache.key(new ExecutionDataStore(), classBytes, true).isPersistent()).isTrue();
+    assertThat(ClassCoverageCache.key(executionData, classBytes, true)).isEqualTo(key);
+    assertThat(ClassCoverageCache.key(new ExecutionDataStore(), classBytes, true)).isNotEqualTo(key);
+    assertThat(ClassCoverageCache.key(new ExecutionDataStore(), new byte[] {1, 2, 3}, true)).isNull();
+  }
+
+  @Test
+  public void key_should_depend_on_analyzer() {
+    assertThat(ClassCoverageCache.key(executionData, classBytes, false)).isNotEqualTo(ClassCoverageCache.key(executionData, classBytes, true));
+  }
+
+  @Test
+  public void class_id_should_be_the_one_of_jacoco() throws IOException {
+    assertThat(ClassCoverageCache.classId(classBytes)).isEqualTo(analyze(executionData).getId());
+    assertThat(ClassCoverageCache.classId(new byte[0])).isEqualTo(0L);
+  }
+
+  @Test
+  public void should_keep_coverage_in_memory() throws IOException {
+    ClassCoverageCache cache = new ClassCoverageCache(new AnalysisCache(settings, fileSystem));
+    ClassCoverageCache.Key key = ClassCoverageCache.key(executionData, classBytes, true);
+    IClassCoverage coverage = analyze(executionData);
+    assertThat(cache.get(key)).isNull();
+
+    cache.put(key, coverage);
+    assertThat(cache.get(key)).isSameAs(coverage);
+    assertThat(new ClassCoverageCache(new AnalysisCache(settings, fileSystem)).get(key)).isNull();
+  }
+
+  @Test
+  public void should_not_persist_coverage_depending_on_probes() throws IOException {
+    settings.setProperty(GroovyPlugin.ANALYSIS_CACHE_ENABLED, true);
+    ClassCoverageCache.Key key = ClassCoverageCache.key(executionData, classBytes, true);
+    new ClassCoverageCache(new AnalysisCache(settings, fileSystem)).put(key, analyze(executionData));
+
+    assertThat(new ClassCoverageCache(new AnalysisCache(settings, fileSystem)).get(key)).isNull();
+    assertThat(new File(fileSystem.workDir(), "groovy-cache/jacoco").list()).isNull();
+  }
+
+  @Test
+  public void should_persist_coverage_by_line() throws IOException {
+    settings.setProperty(GroovyPlugin.ANALYSIS_CACHE_ENABLED, true);
+    ExecutionDataStore noExecutionData = new ExecutionDataStore();
+    ClassCoverageCache.Key key = ClassCoverageCache.key(noExecutionData, classBytes, true);
+    IClassCoverage coverage = analyze(noExecutionData);
+    new ClassCoverageCache(new AnalysisCache(settings, fileSystem)).put(key, coverage);
+
+    IClassCoverage cached = new ClassCoverageCache(new AnalysisCache(settings, fileSystem)).get(key);
+    assertThat(cached).isNotNull();
+    assertThat(cached.getName()).isEqualTo(coverage.getName());
+    assertThat(cached.getId()).isEqualTo(coverage.getId());
+    assertThat(cached.getSourceFileName()).isEqualTo("Hello.groovy");
+    assertThat(cached.getInstructionCounter()).isEqualTo(coverage.getInstructionCounter());
+    assertThat(cached.getBranchCounter()).isEqualTo(coverage.getBranchCounter());
+    assertThat(cached.getFirstLine()).isEqualTo(coverage.getFirstLine());
+    assertThat(cached.getLastLine()).isEqualTo(coverage.getLastLine());
+    for (int line = coverage.getFirstLine(); line <= coverage.getLastLine(); line++) {
+      assertThat(cached.getLine(line).getInstructionCounter()).isEqualTo(coverage.getLine(line).getInstructionCounter());
+      assertThat(cached.getLine(line).getBranchCounter()).isEqualTo(coverage.getLine(line).getBranchCounter());
+    }
+  }
+
+  private IClassCoverage analyze(ExecutionDataStore executionData) throws IOException {
+    CoverageBuilder coverageBuilder = new CoverageBuilder();
+    new Analyzer(executionData, coverageBuilder).analyzeClass(classBytes, "Hello.class");
+    return coverageBuilder.getClasses().iterator().next();
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.jacoco;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.test.TestUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ClassFileScannerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private JaCoCoConfiguration configuration = mock(JaCoCoConfiguration.class);
+  private byte[] helloClass;
+
+  @Before
+  public void setUp() throws IOException {
+    helloClass = Files.toByteArray(TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/Hello.class.toCopy"));
+  }
+
+  @Test
+  public void should_scan_directories_and_archives() throws IOException {
+    File classes = temp.newFolder("classes");
+    File helloFile = new File(classes, "example/Hello.class");
+    Files.createParentDirs(helloFile);
+    Files.write(helloClass, helloFile);
+    Files.write(helloClass, new File(classes, "example/Other.class"));
+    Files.write(helloClass, new File(classes, "example/Hello.groovy"));
+    File jar = createArchive("libs.jar", "example/Hello.class", "other/Library.class", "META-INF/MANIFEST.MF");
+
+    when(configuration.getThreads()).thenReturn(2);
+    Map<String, ClassFile> classFiles = new ClassFileScanner(configuration).scan(ImmutableList.of(jar, classes, new File(temp.getRoot(), "unknown")));
+
+    assertThat(classFiles.keySet()).containsOnly("example/Hello", "example/Other", "other/Library");
+    assertThat(classFiles.get("example/Hello").getPath()).isEqualTo(helloFile.getAbsolutePath());
+    assertThat(classFiles.get("other/Library").getPath()).isEqualTo(jar.getAbsolutePath() + "!/other/Library.class");
+    assertThat(classFiles.get("other/Library").readBytes()).isEqualTo(helloClass);
+  }
+
+  @Test
+  public void should_scan_binaries_once() throws IOException {
+    List<File> binaries = ImmutableList.of(temp.newFolder("classes"));
+    ClassFileScanner scanner = new ClassFileScanner(configuration);
+
+    Map<String, ClassFile> classFiles = scanner.scan(binaries);
+    Files.write(helloClass, new File(binaries.get(0), "Hello.class"));
+    assertThat(scanner.scan(binaries)).isSameAs(classFiles);
+    assertThat(new ClassFileScanner(configuration).scan(binaries)).hasSize(1);
+  }
+
+  @Test
+  public void should_recognize_archives() throws IOException {
+    assertThat(ClassFileScanner.isArchive(createArchive("classes.zip"))).isTrue();
+    assertThat(ClassFileScanner.isArchive(createArchive("classes.JAR"))).isTrue();
+    assertThat(ClassFileScanner.isArchive(temp.newFile("classes.txt"))).isFalse();
+    assertThat(ClassFileScanner.isArchive(temp.newFolder("folder.jar"))).isFalse();
+  }
+
+  private File createArchive(String name, String... entries) throws IOException {
+    File archive = temp.newFile(name);
+    try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(archive))) {
+      for (String entry : entries) {
+        output.putNextEntry(new ZipEntry(entry));
+        output.write(helloClass);
+        output.closeEntry();
+      }
+    }
+    return archive;
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.jacoco;
+
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ClassFileTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_read_class_files_of_directories_and_archives() throws IOException {
+    File file = temp.newFile("A.class");
+    Files.write(new byte[] {1}, file);
+    File archive = temp.newFile("classes.jar");
+    try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(archive))) {
+      output.putNextEntry(new ZipEntry("p/B.class"));
+      output.write(new byte[] {2});
+      output.putNextEntry(new ZipEntry("p/C.class"));
+      output.write(new byte[] {3});
+    }
+
+    ClassFile a = ClassFile.of(file);
+    ClassFile b = ClassFile.inArchive(archive, "p/B.class");
+    ClassFile c = ClassFile.inArchive(archive, "p/C.class");
+    assertThat(a.getArchive()).isNull();
+    assertThat(b.getArchive()).isEqualTo(archive);
+    assertThat(b.getPath()).isEqualTo(archive.getAbsolutePath() + "!/p/B.class");
+
+    try (ClassFile.Reader reader = new ClassFile.Reader()) {
+      assertThat(reader.read(a)).isEqualTo(new byte[] {1});
+      assertThat(reader.read(b)).isEqualTo(new byte[] {2});
+      assertThat(reader.read(c)).isEqualTo(new byte[] {3});
+    }
+    assertThat(c.readBytes()).isEqualTo(new byte[] {3});
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void should_fail_to_read_missing_entry() throws IOException {
+    File archive = temp.newFile("classes.zip");
+    try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(archive))) {
+      output.putNextEntry(new ZipEntry("p/B.class"));
+    }
+    ClassFile.inArchive(archive, "p/Missing.class").readBytes();
+  }
+
+}
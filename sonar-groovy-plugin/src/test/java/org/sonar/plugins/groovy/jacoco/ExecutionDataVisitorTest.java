@@ -28,7 +28,7 @@ import static org.fest.assertions.Assertions.assertThat;
 public class ExecutionDataVisitorTest {
   @Test
   public void test() {
-    ExecutionDataVisitor visitor = new ExecutionDataVisitor();
+    ExecutionDataVisitor visitor = new ExecutionDataVisitor(true);
 
     visitor.visitSessionInfo(new SessionInfo("foo", 1L, 1L));
     visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {true, false, false}));
@@ -46,4 +46,21 @@ public class ExecutionDataVisitorTest {
     assertThat(visitor.getSessions().get("bar").get(1).getProbes()).isEqualTo(new boolean[] {false, true, false});
     assertThat(visitor.getMerged().get(1).getProbes()).isEqualTo(new boolean[] {true, true, true});
   }
+
+  @Test
+  public void should_only_merge_execution_data_by_default() {
+    ExecutionDataVisitor visitor = new ExecutionDataVisitor();
+
+    visitor.visitSessionInfo(new SessionInfo("foo", 1L, 1L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {true, false, false}));
+
+    visitor.visitSessionInfo(new SessionInfo("bar", 2L, 2L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {false, true, false}));
+    visitor.visitClassExecution(new ExecutionData(2, "", new boolean[] {false, true}));
+
+    assertThat(visitor.getSessions()).isEmpty();
+    assertThat(visitor.getMerged().getContents()).hasSize(2);
+    assertThat(visitor.getMerged().get(1).getProbes()).isEqualTo(new boolean[] {true, true, false});
+    assertThat(visitor.getMerged().get(2).getProbes()).isEqualTo(new boolean[] {false, true});
+  }
 }
@@ -67,6 +67,20 @@ public class JaCoCoConfigurationTest {
   public void defaults() {
     assertThat(jacocoSettings.getReportPath()).isEqualTo("target/jacoco.exec");
     assertThat(jacocoSettings.getItReportPath()).isEqualTo("target/jacoco-it.exec");
+    assertThat(jacocoSettings.getThreads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+    assertThat(jacocoSettings.shouldWriteOverallReport()).isFalse();
+  }
+
+  @Test
+  public void shouldWriteOverallReportWhenEnabled() {
+    settings.setProperty(JaCoCoConfiguration.WRITE_OVERALL_REPORT_PROPERTY, true);
+    assertThat(jacocoSettings.shouldWriteOverallReport()).isTrue();
+  }
+
+  @Test
+  public void shouldReturnThreadsWhenModified() {
+    settings.setProperty(JaCoCoConfiguration.THREADS_PROPERTY, 3);
+    assertThat(jacocoSettings.getThreads()).isEqualTo(3);
   }
 
   @Test
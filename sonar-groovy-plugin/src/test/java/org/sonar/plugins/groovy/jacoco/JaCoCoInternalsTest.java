@@ -0,0 +1,57 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.jacoco;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class JaCoCoInternalsTest {
+
+  @Test
+  public void should_be_reviewed_when_upgrading_jacoco() {
+    // JaCoCoInternals relies on internal classes of this version of JaCoCo
+    assertThat(JaCoCo.VERSION).isEqualTo("0.7.5.201505241946");
+  }
+
+  @Test
+  public void should_build_class_coverage_by_line() {
+    ICounter[] instructions = {JaCoCoInternals.counter(1, 2), JaCoCoInternals.counter(0, 0), JaCoCoInternals.counter(3, 0), JaCoCoInternals.counter(0, 4)};
+    ICounter[] branches = {JaCoCoInternals.counter(1, 1), JaCoCoInternals.counter(0, 0), JaCoCoInternals.counter(0, 0), JaCoCoInternals.counter(0, 0)};
+
+    IClassCoverage coverage = JaCoCoInternals.classCoverage("example/Hello", 42L, false, "Hello.groovy", 10, instructions, branches);
+
+    assertThat(coverage.getName()).isEqualTo("example/Hello");
+    assertThat(coverage.getId()).isEqualTo(42L);
+    assertThat(coverage.isNoMatch()).isFalse();
+    assertThat(coverage.getSourceFileName()).isEqualTo("Hello.groovy");
+    assertThat(coverage.getFirstLine()).isEqualTo(10);
+    assertThat(coverage.getLastLine()).isEqualTo(12);
+    assertThat(coverage.getLine(10).getInstructionCounter()).isEqualTo(JaCoCoInternals.counter(1, 2));
+    assertThat(coverage.getLine(10).getBranchCounter()).isEqualTo(JaCoCoInternals.counter(1, 1));
+    assertThat(coverage.getLine(12).getInstructionCounter()).isEqualTo(JaCoCoInternals.counter(3, 0));
+    assertThat(coverage.getInstructionCounter()).isEqualTo(JaCoCoInternals.counter(4, 6));
+    assertThat(coverage.getBranchCounter()).isEqualTo(JaCoCoInternals.counter(1, 1));
+  }
+
+}
@@ -29,10 +29,12 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFile.Type;
 import org.sonar.api.batch.fs.internal.DefaultFileSystem;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.Project;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.test.IsMeasure;
+import org.sonar.plugins.groovy.foundation.AnalysisCache;
 import org.sonar.plugins.groovy.foundation.Groovy;
 import org.sonar.test.TestUtils;
 
@@ -84,7 +86,8 @@ public class JaCoCoItSensorTest {
     context = mock(SensorContext.class);
     pathResolver = mock(PathResolver.class);
     project = mock(Project.class);
-    sensor = new JaCoCoItSensor(groovy, configuration, fileSystem, pathResolver);
+    sensor = new JaCoCoItSensor(groovy, configuration, fileSystem, pathResolver, new ClassCoverageCache(new AnalysisCache(new Settings(), fileSystem)),
+      new ClassFileScanner(configuration));
   }
 
   @Test
@@ -28,11 +28,13 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFile.Type;
 import org.sonar.api.batch.fs.internal.DefaultFileSystem;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.Project;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.test.IsMeasure;
+import org.sonar.plugins.groovy.foundation.AnalysisCache;
 import org.sonar.plugins.groovy.foundation.Groovy;
 import org.sonar.test.TestUtils;
 
@@ -88,7 +90,8 @@ public class JaCoCoOverallSensorTest {
     context = mock(SensorContext.class);
     pathResolver = mock(PathResolver.class);
     project = mock(Project.class);
-    sensor = new JaCoCoOverallSensor(groovy, configuration, fileSystem, pathResolver);
+    sensor = new JaCoCoOverallSensor(groovy, configuration, fileSystem, pathResolver, new ClassCoverageCache(new AnalysisCache(new Settings(), fileSystem)),
+      new ClassFileScanner(configuration));
   }
 
   @Test
@@ -133,6 +136,37 @@ public class JaCoCoOverallSensorTest {
     verify(context).saveMeasure(eq(inputFile), argThat(new IsMeasure(CoreMetrics.OVERALL_COVERED_CONDITIONS_BY_LINE, "14=2;29=1;30=0")));
   }
 
+  @Test
+  public void test_read_execution_data_with_lists_of_reports_in_parallel() {
+    when(configuration.getThreads()).thenReturn(2);
+    when(configuration.getReportPath()).thenReturn("jacoco-u*.exec, fake.exec");
+    when(configuration.getItReportPath()).thenReturn("**/jacoco-i?.exec");
+    when(pathResolver.relativeFile(any(File.class), eq("."))).thenReturn(outputDir);
+    when(pathResolver.relativeFile(any(File.class), eq("fake.exec"))).thenReturn(fakeExecFile());
+
+    sensor.analyse(project, context);
+
+    verify(context).saveMeasure(eq(inputFile), argThat(new IsMeasure(CoreMetrics.OVERALL_LINES_TO_COVER, 14.0)));
+    verify(context).saveMeasure(eq(inputFile), argThat(new IsMeasure(CoreMetrics.OVERALL_UNCOVERED_LINES, 2.0)));
+    verify(context).saveMeasure(eq(inputFile),
+      argThat(new IsMeasure(CoreMetrics.OVERALL_COVERAGE_LINE_HITS_DATA, "9=1;10=1;14=1;15=1;17=1;21=1;25=1;29=1;30=0;32=1;33=1;38=0;42=1;47=1")));
+  }
+
+  @Test
+  public void should_write_overall_report_only_when_enabled() {
+    setMocks(true, true);
+    File jacocoOverallData = new File(outputDir, JaCoCoOverallSensor.JACOCO_OVERALL);
+    jacocoOverallData.delete();
+
+    sensor.analyse(project, context);
+    assertThat(jacocoOverallData).doesNotExist();
+
+    when(configuration.shouldWriteOverallReport()).thenReturn(true);
+    sensor.analyse(project, context);
+    assertThat(jacocoOverallData).exists();
+    jacocoOverallData.delete();
+  }
+
   @Test
   public void test_read_execution_data_with_IT_and_UT_and_binaryDirs_being_absolute() {
     setMocks(true, true);
@@ -187,8 +221,6 @@ public class JaCoCoOverallSensorTest {
     when(pathResolver.relativeFile(any(File.class), eq("ut.exec"))).thenReturn(utReport ? jacocoUTData : fakeExecFile());
     when(configuration.getItReportPath()).thenReturn("it.exec");
     when(pathResolver.relativeFile(any(File.class), eq("it.exec"))).thenReturn(itReport ? jacocoITData : fakeExecFile());
-    File jacocoOverallData = new File(outputDir, "jacoco-overall.exec");
-    when(pathResolver.relativeFile(any(File.class), eq(jacocoOverallData.getAbsolutePath()))).thenReturn(jacocoOverallData);
   }
 
   private File fakeExecFile() {
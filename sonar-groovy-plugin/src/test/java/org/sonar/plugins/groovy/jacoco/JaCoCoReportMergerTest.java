@@ -19,6 +19,8 @@
  */
 package org.sonar.plugins.groovy.jacoco;
 
+import com.google.common.collect.Lists;
+import org.jacoco.core.data.ExecutionData;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -27,6 +29,8 @@ import org.sonar.test.TestUtils;
 
 import java.io.File;
 
+import static org.fest.assertions.Assertions.assertThat;
+
 public class JaCoCoReportMergerTest {
 
   @Rule
@@ -54,6 +58,31 @@ public class JaCoCoReportMergerTest {
     merge("jacoco-0.7.5.exec", "jacoco-it-0.7.5.exec");
   }
 
+  @Test
+  public void read_reports_in_parallel_should_merge_execution_data() {
+    File current = TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCo_incompatible_merge/jacoco-0.7.5.exec");
+    File it = TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCo_incompatible_merge/jacoco-it-0.7.5.exec");
+    ExecutionDataVisitor sequential = new ExecutionDataVisitor();
+    JaCoCoReportMerger.readReports(sequential, sequential, current, it);
+
+    ExecutionDataVisitor parallel = new ExecutionDataVisitor();
+    assertThat(JaCoCoReportMerger.readReports(parallel, 2, Lists.newArrayList(current, it, new File("unknown.exec")))).isTrue();
+
+    assertThat(parallel.getMerged().getContents()).hasSize(sequential.getMerged().getContents().size());
+    for (ExecutionData data : sequential.getMerged().getContents()) {
+      assertThat(parallel.getMerged().get(data.getId()).getProbes()).isEqualTo(data.getProbes());
+    }
+  }
+
+  @Test
+  public void read_reports_in_parallel_with_different_format_should_fail() {
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("You are trying to merge two different JaCoCo binary formats. Please use only one version of JaCoCo.");
+    JaCoCoReportMerger.readReports(new ExecutionDataVisitor(), 2, Lists.newArrayList(
+      TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCo_incompatible_merge/jacoco-0.7.5.exec"),
+      TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCo_incompatible_merge/jacoco-it-0.7.4.exec")));
+  }
+
   private void merge(String file1, String file2) {
     File current = TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCo_incompatible_merge/" + file1);
     File previous = TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCo_incompatible_merge/" + file2);
@@ -33,6 +33,7 @@ import org.sonar.test.TestUtils;
 import java.io.File;
 import java.util.Collection;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 
 public class JaCoCoReportReaderTest {
@@ -48,7 +49,7 @@ public class JaCoCoReportReaderTest {
   @Test
   public void reading_unexisting_file_should_fail() {
     expectedException.expect(IllegalArgumentException.class);
-    new JaCoCoReportReader(dummy);
+    new JaCoCoReportReader(dummy).readJacocoReport(mock(IExecutionDataVisitor.class), mock(ISessionInfoVisitor.class));
   }
 
   @Test
@@ -59,15 +60,16 @@ public class JaCoCoReportReaderTest {
   @Test
   public void not_existing_class_files_should_not_be_analyzed_for_current() {
     File report = TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCo_incompatible_merge/jacoco-0.7.5.exec");
-    Collection<File> classFile = Lists.newArrayList(dummy);
+    Collection<ClassFile> classFile = Lists.newArrayList(ClassFile.of(dummy));
     new JaCoCoReportReader(report).analyzeFiles(null, classFile);
   }
 
   @Test
   public void not_existing_class_files_should_not_be_analyzed_for_previous() {
     File report = TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCo_incompatible_merge/jacoco-0.7.4.exec");
-    Collection<File> classFile = Lists.newArrayList(dummy);
-    new JaCoCoReportReader(report).analyzeFiles(null, classFile);
+    Collection<ClassFile> classFile = Lists.newArrayList(ClassFile.of(dummy));
+    ExecutionDataVisitor edv = new ExecutionDataVisitor();
+    new JaCoCoReportReader(report).readJacocoReport(edv, edv).analyzeFiles(null, classFile);
   }
 
   @Test
@@ -87,13 +89,32 @@ public class JaCoCoReportReaderTest {
   public void incorrect_binary_format_should_fail() throws Exception {
     File report = TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/Hello.class.toCopy");
     expectedException.expect(IllegalArgumentException.class);
-    new JaCoCoReportReader(report);
+    new JaCoCoReportReader(report).readJacocoReport(mock(IExecutionDataVisitor.class), mock(ISessionInfoVisitor.class));
   }
 
   @Test
   public void unknown_exec_file_should_fail() {
     expectedException.expect(IllegalArgumentException.class);
-    new JaCoCoReportReader(new File("unknown.exec"));
+    new JaCoCoReportReader(new File("unknown.exec")).readJacocoReport(mock(IExecutionDataVisitor.class), mock(ISessionInfoVisitor.class));
+  }
+
+  @Test
+  public void should_determine_format_when_reading_report() {
+    ExecutionDataVisitor edv = new ExecutionDataVisitor();
+    File previousReport = TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCo_incompatible_merge/jacoco-0.7.4.exec");
+    assertThat(new JaCoCoReportReader(previousReport).readJacocoReport(edv, edv).useCurrentBinaryFormat()).isFalse();
+    File currentReport = TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCo_incompatible_merge/jacoco-0.7.5.exec");
+    assertThat(new JaCoCoReportReader(currentReport).readJacocoReport(edv, edv).useCurrentBinaryFormat()).isTrue();
+  }
+
+  @Test
+  public void should_release_report_once_read() throws Exception {
+    File report = testFolder.newFile("jacoco.exec");
+    FileUtils.copyFile(TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/JaCoCo_incompatible_merge/jacoco-0.7.5.exec"), report);
+    ExecutionDataVisitor edv = new ExecutionDataVisitor();
+    new JaCoCoReportReader(report).readJacocoReport(edv, edv);
+    // a mapping left to the garbage collector would prevent the deletion on Windows
+    assertThat(report.delete()).isTrue();
   }
 
 }
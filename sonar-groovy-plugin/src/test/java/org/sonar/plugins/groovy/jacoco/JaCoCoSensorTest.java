@@ -29,15 +29,20 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFile.Type;
 import org.sonar.api.batch.fs.internal.DefaultFileSystem;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.Project;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.test.IsMeasure;
+import org.sonar.plugins.groovy.foundation.AnalysisCache;
 import org.sonar.plugins.groovy.foundation.Groovy;
 import org.sonar.test.TestUtils;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -56,6 +61,8 @@ public class JaCoCoSensorTest {
   private PathResolver pathResolver;
   private Project project;
   private JaCoCoSensor sensor;
+  private ClassCoverageCache classCoverageCache;
+  private Groovy groovy;
 
   @Before
   public void setUp() throws Exception {
@@ -71,7 +78,7 @@ public class JaCoCoSensorTest {
     Files.copy(TestUtils.getResource("/org/sonar/plugins/groovy/jacoco/Hello$InnerClass.class.toCopy"),
       new File(jacocoExecutionData.getParentFile(), "Hello$InnerClass.class"));
 
-    Groovy groovy = mock(Groovy.class);
+    groovy = mock(Groovy.class);
     when(groovy.getBinaryDirectories()).thenReturn(Lists.newArrayList("."));
 
     configuration = mock(JaCoCoConfiguration.class);
@@ -89,7 +96,8 @@ public class JaCoCoSensorTest {
     context = mock(SensorContext.class);
     pathResolver = mock(PathResolver.class);
     project = mock(Project.class);
-    sensor = new JaCoCoSensor(groovy, configuration, fileSystem, pathResolver);
+    classCoverageCache = new ClassCoverageCache(new AnalysisCache(new Settings(), fileSystem));
+    sensor = new JaCoCoSensor(groovy, configuration, fileSystem, pathResolver, classCoverageCache, new ClassFileScanner(configuration));
 
     return jacocoExecutionData;
   }
@@ -143,6 +151,51 @@ public class JaCoCoSensorTest {
     verifyMeasures();
   }
 
+  @Test
+  public void test_read_execution_data_in_parallel() throws IOException {
+    File jacocoExecutionData = initWithJaCoCoVersion("JaCoCoSensor_0_7_5");
+    when(configuration.getThreads()).thenReturn(2);
+    when(pathResolver.relativeFile(any(File.class), argThat(Matchers.endsWith(".exec")))).thenReturn(jacocoExecutionData);
+
+    sensor.analyse(project, context);
+
+    verifyMeasures();
+  }
+
+  @Test
+  public void test_read_execution_data_with_classes_in_archive() throws IOException {
+    File jacocoExecutionData = initWithJaCoCoVersion("JaCoCoSensor_0_7_5");
+    File archive = new File(jacocoExecutionData.getParentFile(), "classes/hello.jar");
+    Files.createParentDirs(archive);
+    try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(archive))) {
+      for (String className : new String[] {"Hello", "Hello$InnerClass"}) {
+        output.putNextEntry(new ZipEntry(className + ".class"));
+        output.write(Files.toByteArray(new File(jacocoExecutionData.getParentFile(), className + ".class")));
+        output.closeEntry();
+      }
+    }
+    when(groovy.getBinaryDirectories()).thenReturn(Lists.newArrayList("classes/hello.jar"));
+    when(pathResolver.relativeFile(any(File.class), argThat(Matchers.endsWith(".exec")))).thenReturn(jacocoExecutionData);
+
+    sensor.analyse(project, context);
+
+    verifyMeasures();
+  }
+
+  @Test
+  public void should_reuse_coverage_of_classes_already_analyzed() throws IOException {
+    File jacocoExecutionData = initWithJaCoCoVersion("JaCoCoSensor_0_7_5");
+    when(pathResolver.relativeFile(any(File.class), argThat(Matchers.endsWith(".exec")))).thenReturn(jacocoExecutionData);
+
+    sensor.analyse(project, context);
+    assertThat(classCoverageCache.size()).isEqualTo(2);
+
+    context = mock(SensorContext.class);
+    sensor.analyse(project, context);
+    assertThat(classCoverageCache.size()).isEqualTo(2);
+    verifyMeasures();
+  }
+
   private void verifyMeasures() {
     verify(context).saveMeasure(eq(inputFile), argThat(new IsMeasure(CoreMetrics.LINES_TO_COVER, 14.0)));
     verify(context).saveMeasure(eq(inputFile), argThat(new IsMeasure(CoreMetrics.UNCOVERED_LINES, 3.0)));
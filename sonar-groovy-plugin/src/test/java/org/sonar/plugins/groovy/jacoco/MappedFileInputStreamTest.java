@@ -0,0 +1,84 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.jacoco;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MappedFileInputStreamTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_read_mapped_file() throws IOException {
+    File file = temp.newFile("data.bin");
+    Files.write(new byte[] {1, 2, 3, 4, 5}, file);
+
+    List<ByteBuffer> regions = MappedFileInputStream.map(file);
+    assertThat(ByteStreams.toByteArray(new MappedFileInputStream(regions))).isEqualTo(new byte[] {1, 2, 3, 4, 5});
+    // regions are not consumed by a stream
+    assertThat(ByteStreams.toByteArray(new MappedFileInputStream(regions))).isEqualTo(new byte[] {1, 2, 3, 4, 5});
+
+    assertThat(MappedFileInputStream.map(temp.newFile("empty.bin"))).isEmpty();
+  }
+
+  @Test
+  public void should_release_mapping() throws IOException {
+    File file = temp.newFile("data.bin");
+    Files.write(new byte[] {1, 2, 3}, file);
+
+    assertThat(MappedFileInputStream.unmap(MappedFileInputStream.map(file))).isTrue();
+    assertThat(file.delete()).isTrue();
+  }
+
+  @Test
+  public void should_read_consecutive_regions() throws IOException {
+    MappedFileInputStream stream = new MappedFileInputStream(Arrays.asList(
+      ByteBuffer.wrap(new byte[] {1, 2}),
+      ByteBuffer.wrap(new byte[0]),
+      ByteBuffer.wrap(new byte[] {(byte) 0xFF, 4})));
+
+    assertThat(stream.available()).isEqualTo(2);
+    assertThat(stream.read()).isEqualTo(1);
+    byte[] bytes = new byte[3];
+    assertThat(stream.read(bytes, 0, 3)).isEqualTo(1);
+    assertThat(bytes[0]).isEqualTo((byte) 2);
+    assertThat(stream.read()).isEqualTo(0xFF);
+    assertThat(stream.read(bytes, 0, 0)).isEqualTo(0);
+    assertThat(stream.read(bytes, 1, 2)).isEqualTo(1);
+    assertThat(bytes[1]).isEqualTo((byte) 4);
+    assertThat(stream.read()).isEqualTo(-1);
+    assertThat(stream.read(bytes, 0, 3)).isEqualTo(-1);
+    assertThat(stream.available()).isEqualTo(0);
+  }
+
+}
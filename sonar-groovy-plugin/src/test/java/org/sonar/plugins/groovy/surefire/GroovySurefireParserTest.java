@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.groovy.surefire;
 
+import com.google.common.collect.Interners;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.junit.Before;
@@ -44,10 +45,14 @@ import org.sonar.api.test.MutableTestPlan;
 import org.sonar.api.test.TestCase;
 import org.sonar.plugins.groovy.GroovyPlugin;
 import org.sonar.plugins.groovy.foundation.Groovy;
+import org.sonar.plugins.groovy.surefire.data.UnitTestClassReport;
+import org.sonar.plugins.groovy.surefire.data.UnitTestIndex;
 
 import java.io.File;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyDouble;
 import static org.mockito.Matchers.anyLong;
@@ -72,6 +77,7 @@ public class GroovySurefireParserTest {
   private GroovySurefireParser parser;
   private Groovy groovy;
   private SensorContext context;
+  private Settings settings;
 
   @Before
   public void before() {
@@ -79,7 +85,7 @@ public class GroovySurefireParserTest {
     perspectives = mock(ResourcePerspectives.class);
     fs = new DefaultFileSystem(new File("."));
 
-    Settings settings = mock(Settings.class);
+    settings = mock(Settings.class);
     when(settings.getStringArray(GroovyPlugin.FILE_SUFFIXES_KEY)).thenReturn(new String[] {".groovy", "grvy"});
     groovy = new Groovy(settings);
 
@@ -197,6 +203,29 @@ public class GroovySurefireParserTest {
       any(Metric.class), anyDouble());
   }
 
+  @Test
+  public void should_merge_inner_classes_when_saving_results_while_parsing() throws URISyntaxException {
+    when(settings.getBoolean(GroovyPlugin.SUREFIRE_STREAMING_SAVE)).thenReturn(true);
+    MutableTestCase testCase = mock(MutableTestCase.class);
+    when(testCase.setDurationInMs(anyLong())).thenReturn(testCase);
+    when(testCase.setStatus(any(TestCase.Status.class))).thenReturn(testCase);
+    when(testCase.setMessage(anyString())).thenReturn(testCase);
+    when(testCase.setStackTrace(anyString())).thenReturn(testCase);
+    when(testCase.setType(anyString())).thenReturn(testCase);
+    MutableTestPlan testPlan = mock(MutableTestPlan.class);
+    when(testPlan.addTestCase(anyString())).thenReturn(testCase);
+    when(perspectives.as(eq(MutableTestPlan.class),
+      argThat(inputFileMatcher("org.apache.commons.collections.bidimap.AbstractTestBidiMap")))).thenReturn(testPlan);
+
+    parser.collect(context, getDir("innerClasses"));
+
+    verify(context)
+      .saveMeasure(argThat(inputFileMatcher("org.apache.commons.collections.bidimap.AbstractTestBidiMap")), eq(CoreMetrics.TESTS), eq(7.0));
+    verify(context).saveMeasure(argThat(inputFileMatcher("org.apache.commons.collections.bidimap.AbstractTestBidiMap")), eq(CoreMetrics.TEST_ERRORS),
+      eq(1.0));
+    verify(testPlan, times(7)).addTestCase(anyString());
+  }
+
   @Test
   public void shouldMergeNestedInnerClasses() throws URISyntaxException {
     parser.collect(context, getDir("nestedInnerClasses"));
@@ -239,4 +268,28 @@ public class GroovySurefireParserTest {
     verify(context, times(1)).saveMeasure(any(InputFile.class), eq(CoreMetrics.TESTS), anyDouble());
   }
 
+  @Test
+  public void should_index_reports_concurrently_as_sequentially() throws URISyntaxException {
+    File[] reports = getDir("multipleReports").listFiles();
+    Arrays.sort(reports);
+
+    UnitTestIndex sequentialIndex = GroovySurefireParser.parseFiles(reports, 1, 0, Interners.<String>newWeakInterner());
+    UnitTestIndex concurrentIndex = GroovySurefireParser.parseFiles(reports, 3, 0, Interners.<String>newWeakInterner());
+
+    assertThat(concurrentIndex.getClassnames()).isEqualTo(sequentialIndex.getClassnames());
+    for (String classname : sequentialIndex.getClassnames()) {
+      UnitTestClassReport expected = sequentialIndex.get(classname);
+      UnitTestClassReport actual = concurrentIndex.get(classname);
+      assertThat(actual.getTests()).isEqualTo(expected.getTests());
+      assertThat(actual.getErrors()).isEqualTo(expected.getErrors());
+      assertThat(actual.getFailures()).isEqualTo(expected.getFailures());
+      assertThat(actual.getSkipped()).isEqualTo(expected.getSkipped());
+      assertThat(actual.getDurationMilliseconds()).isEqualTo(expected.getDurationMilliseconds());
+      assertThat(actual.getResults()).hasSize(expected.getResults().size());
+      for (int i = 0; i < expected.getResults().size(); i++) {
+        assertThat(actual.getResults().get(i).getName()).isEqualTo(expected.getResults().get(i).getName());
+      }
+    }
+  }
+
 }
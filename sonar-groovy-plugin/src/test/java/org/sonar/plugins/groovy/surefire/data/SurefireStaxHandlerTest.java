@@ -0,0 +1,78 @@
+/*
+ * Sonar Groovy Plugin
+ * Copyright (C) 2010 SonarSource
+ * sonarqube@googlegroups.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.groovy.surefire.data;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.junit.Test;
+import org.sonar.api.utils.StaxParser;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SurefireStaxHandlerTest {
+
+  private static final File REPORT_WITH_ERROR = new File(
+    "src/test/resources/org/sonar/plugins/groovy/surefire/SurefireParserTest/innerClasses/TEST-org.apache.commons.collections.TestAllPackages.xml");
+
+  @Test
+  public void should_keep_whole_stack_traces_by_default() throws Exception {
+    UnitTestIndex index = new UnitTestIndex();
+    new StaxParser(new SurefireStaxHandler(index), false).parse(REPORT_WITH_ERROR);
+
+    String stackTrace = stackTraceOfError(index);
+    assertThat(stackTrace).startsWith("java.io.InvalidClassException:");
+    assertThat(stackTrace).contains("at java.io.ObjectStreamClass.initNonProxy");
+    assertThat(stackTrace).doesNotContain(SurefireStaxHandler.TRUNCATED_STACK_TRACE);
+  }
+
+  @Test
+  public void should_truncate_long_stack_traces() throws Exception {
+    UnitTestIndex index = new UnitTestIndex();
+    new StaxParser(new SurefireStaxHandler(index, 30, Interners.<String>newWeakInterner()), false).parse(REPORT_WITH_ERROR);
+
+    String stackTrace = stackTraceOfError(index);
+    assertThat(stackTrace).startsWith("java.io.InvalidClassException:");
+    assertThat(stackTrace).endsWith(SurefireStaxHandler.TRUNCATED_STACK_TRACE);
+    assertThat(stackTrace.length()).isEqualTo(30 + SurefireStaxHandler.TRUNCATED_STACK_TRACE.length());
+  }
+
+  @Test
+  public void should_share_stack_traces_across_reports() throws Exception {
+    Interner<String> stackTraces = Interners.newWeakInterner();
+    UnitTestIndex firstIndex = new UnitTestIndex();
+    new StaxParser(new SurefireStaxHandler(firstIndex, 0, stackTraces), false).parse(REPORT_WITH_ERROR);
+    UnitTestIndex secondIndex = new UnitTestIndex();
+    new StaxParser(new SurefireStaxHandler(secondIndex, 0, stackTraces), false).parse(REPORT_WITH_ERROR);
+
+    assertThat(stackTraceOfError(secondIndex)).isSameAs(stackTraceOfError(firstIndex));
+  }
+
+  private static String stackTraceOfError(UnitTestIndex index) {
+    for (UnitTestResult result : index.get("org.apache.commons.collections.bidimap.AbstractTestBidiMap$TestInverseBidiMap").getResults()) {
+      if (result.isError()) {
+        return result.getStackTrace();
+      }
+    }
+    throw new AssertionError("No test in error");
+  }
+
+}